@@ -1,10 +1,7 @@
 package amazons;
 
-import java.util.ArrayList;
-
 import static java.lang.Math.*;
-import java.util.Iterator;
-import static amazons.Piece.*;
+import static amazons.Utils.error;
 
 /** A Player that automatically generates moves.
  *  @author Zhenkai Han
@@ -16,20 +13,11 @@ class AI extends Player {
      * if negative).
      */
     private static final int WINNING_VALUE = Integer.MAX_VALUE - 1;
-    /**
-     * A magnitude greater than a normal value.
-     */
-    private static final int INFTY = Integer.MAX_VALUE;
-
-    /**
-     * A magnitude greater than a normal value.
-     */
-    private static final int FINAL = 35;
 
     /**
-     * A magnitude greater than a normal value.
+     * Log base 2 of the number of entries in the transposition table.
      */
-    private static final int FINAL_TURN = 5;
+    private static final int TABLE_LOG_SIZE = 20;
 
     /**
      * A new AI with no piece or controller (intended to produce
@@ -54,257 +42,370 @@ class AI extends Player {
     @Override
     String myMove() {
         Move move = findMove();
+        if (_stats != null) {
+            _controller.reportInfo(_stats);
+        }
         _controller.reportMove(move);
         return move.toString();
     }
 
+    @Override
+    void cancel() {
+        stopPondering(null);
+    }
+
     /**
      * Return a move for me from the current position, assuming there
-     * is a move.
+     * is a move.  Searches to successively greater depths until the
+     * time budget for this move runs out, and returns the move chosen
+     * by the deepest search that finished.  When using more than one
+     * thread, the extra threads search the same position as helpers
+     * (see startHelpers).  Takes moves from my controller's opening
+     * book, if it has one, while the book has them.  Once the two
+     * sides' queens are walled off from each other, plays a perfect
+     * endgame instead (see Endgame).  If my controller says to ponder,
+     * goes on searching in the background after choosing a move (see
+     * startPondering); if the opponent then makes the move expected,
+     * and the background search has already run for as long as this
+     * search would, plays the move it found without searching again.
      */
     private Move findMove() {
-        Board b = new Board(board());
-        myStrategy();
-        if (_myPiece == WHITE) {
-            findMove(b, maxDepth(b), true, 1, -INFTY, INFTY);
+        long start = System.nanoTime();
+        Board b = board();
+        Move pondered = stopPondering(b);
+        setEvaluator(_controller.evaluator());
+        setThreads(_controller.searchThreads());
+        setSelectivity(_controller.selectivity());
+        OpeningBook book = _controller.book();
+        long budget = _controller.timeBudget() * 1000000;
+        if (_endgame == null) {
+            _endgame = new Endgame();
+        }
+        _endgame.setTablebase(_controller.tablebase());
+        Move best = book == null ? null : book.lookup(b);
+        _stats = null;
+        if (best != null) {
+            _nodes = 0;
+            _controller.chargeTime((System.nanoTime() - start) / 1000000);
+            return best;
+        } else if (_endgame.solve(b)) {
+            _nodes = _endgame.nodes();
+            _controller.chargeTime((System.nanoTime() - start) / 1000000);
+            return Move.mv(_endgame.bestMove());
+        } else if (pondered != null && _ponderNanos >= budget / 2) {
+            best = pondered;
+            _stats = collectStats(1, _ponderNanos);
+            _nodes = _stats.nodes();
         } else {
-            findMove(b, maxDepth(b), true, -1, -INFTY, INFTY);
+            _boards[0].copy(b);
+            _table.resetStatistics();
+            startHelpers(b, start, budget);
+            best = _searchers[0].deepen(_boards[0], 0, maxDepth(b), start,
+                                        budget, false);
+            stopHelpers();
+            _stats = collectStats(_searchers.length,
+                                  System.nanoTime() - start);
+            _nodes = _stats.nodes();
+        }
+        if (_controller.pondering()) {
+            _boards[0].copy(b);
+            _boards[0].makeMove(best);
+            startPondering(_boards[0]);
         }
-        return _lastFoundMove;
+        _controller.chargeTime((System.nanoTime() - start) / 1000000);
+        return best;
     }
 
-    /**
-     * The move found by the last call to one of the ...FindMove methods
-     * below.
-     */
-    private Move _lastFoundMove;
-
-    /**
-     * Find a move from position BOARD and return its value, recording
-     * the move found in _lastFoundMove iff SAVEMOVE. The move
-     * should have maximal value or have value > BETA if SENSE==1,
-     * and minimal value or value < ALPHA if SENSE==-1. Searches up to
-     * DEPTH levels.  Searching at level 0 simply returns a static estimate
-     * of the board value and does not set _lastMoveFound.
-     */
-    private int findMove(Board board, int depth, boolean saveMove, int sense,
-                         int alpha, int beta) {
-        if (sense == 1) {
-            return  findMaxMove(board, depth, saveMove, sense, alpha, beta);
-        } else {
-            return  findMinMove(board, depth, saveMove, sense, alpha, beta);
+    /** Start searching, in the background, the position that BOARD, on
+     *  which my opponent is to move, would reach after the reply that
+     *  my transposition table predicts, and return that reply.  Searches
+     *  until stopPondering is called.  Does nothing, and returns null,
+     *  if there is no prediction.  Uses my main Searcher and its board,
+     *  and leaves BOARD unchanged unless it is that board. */
+    Move startPondering(Board board) {
+        if (_searchers == null || board.winner() != null) {
+            return null;
+        }
+        long entry = _table.probe(board.key());
+        if (entry == TranspositionTable.MISSING
+            || TranspositionTable.move(entry) == TranspositionTable.NO_MOVE) {
+            return null;
+        }
+        Move reply = Move.mv(TranspositionTable.move(entry));
+        if (!board.isLegal(reply)) {
+            return null;
         }
+        Board ponder = _boards[0];
+        ponder.copy(board);
+        ponder.makeMove(reply);
+        Searcher searcher = _searchers[0];
+        searcher.clearStop();
+        _table.resetStatistics();
+        _ponderKey = ponder.key();
+        _ponderMove = null;
+        _ponderStart = System.nanoTime();
+        _ponderer = new Thread(() ->
+            _ponderMove = searcher.deepen(ponder, 0, maxDepth(ponder),
+                                          System.nanoTime(),
+                                          Searcher.NO_LIMIT, true));
+        _ponderer.setDaemon(true);
+        _ponderer.start();
+        return reply;
     }
 
-
-    /**
-     * Find a move from position BOARD and return its value, recording
-     * the move found in _lastFoundMove iff SAVEMOVE. The move
-     * should have maximal value or have value > BETA if SENSE==1
-     * and minimal value or value < ALPHA if SENSE==-1.
-     * Searches up to DEPTH levels.
-     */
-    private int findMaxMove(Board board, int depth,
-                             boolean saveMove, int sense, int alpha, int beta) {
-        ArrayList<Move> myMvs = myPossibleMoves();
-        int bestSoFar = -INFTY * sense;
-        if ((depth == 0) || (board.winner() != null)) {
-            bestSoFar = simpleFindMove(board, -1, alpha, beta);
-        } else {
-            for (Move m : myMvs) {
-                board.makeAove(m);
-                int response = findMove(board, depth - 1,
-                        false, -1, alpha, beta);
-                if (response >= bestSoFar) {
-                    bestSoFar = response;
-                    if (saveMove) {
-                        _lastFoundMove = m;
-                    }
-                    alpha = max(alpha, bestSoFar);
-                    if (beta <= alpha) {
-                        board.undo();
-                        break;
-                    }
-                }
-                board.undo();
+    /** Stop pondering, if I am, and wait for the search to finish.  If
+     *  the position on BOARD (which may be null) is the one pondered,
+     *  return the move the search found, if any, and otherwise null.  Sets
+     *  _ponderNanos to the time spent pondering.  The transposition
+     *  table keeps what the search found either way, and my main
+     *  Searcher is ready for a search with a time limit. */
+    Move stopPondering(Board board) {
+        if (_ponderer == null) {
+            return null;
+        }
+        _searchers[0].stop();
+        boolean done = false;
+        while (!done) {
+            try {
+                _ponderer.join();
+                done = true;
+            } catch (InterruptedException excp) {
+                /* Keep waiting: the search is about to stop. */
             }
         }
-        return bestSoFar;
+        _ponderer = null;
+        _searchers[0].clearStop();
+        _ponderNanos = System.nanoTime() - _ponderStart;
+        if (board == null || board.key() != _ponderKey) {
+            return null;
+        }
+        return _ponderMove;
     }
 
-    /**
-     * Find a move from position BOARD and return its value, recording
-     * the move found in _lastFoundMove iff SAVEMOVE. The move
-     * should have minimal value or have value > BETA if SENSE==1
-     * and minimal value or value < ALPHA if SENSE==-1.
-     * Searches up to DEPTH levels.
-     */
-    private int findMinMove(Board board, int depth, boolean saveMove, int sense,
-                            int alpha, int beta) {
-        ArrayList<Move> myMvs = myPossibleMoves();
-        int bestSoFar = -INFTY * sense;
-        if ((depth == 0) || (board.winner() != null)) {
-            bestSoFar = simpleFindMove(board, 1, alpha, beta);
-        } else {
-            for (Move m : myMvs) {
-                board.makeAove(m);
-                int response = findMove(board, depth - 1,
-                        false, 1, alpha, beta);
-                if (response <= bestSoFar) {
-                    bestSoFar = response;
-                    if (saveMove) {
-                        _lastFoundMove = m;
-                    }
-                    beta = min(beta, bestSoFar);
-                    if (beta <= alpha) {
-                        board.undo();
-                        break;
-                    }
+    /** Set the number of threads used to search to N >= 1.  With one
+     *  thread, a search to a given depth is deterministic. */
+    void setThreads(int n) {
+        if (n < 1) {
+            throw error("need at least one thread");
+        }
+        if (_table == null) {
+            _table = new TranspositionTable(TABLE_LOG_SIZE);
+        }
+        if (_searchers == null || _searchers.length != n) {
+            Searcher[] searchers = new Searcher[n];
+            for (int i = 0; i < n; i += 1) {
+                if (_searchers != null && i < _searchers.length) {
+                    searchers[i] = _searchers[i];
+                } else {
+                    searchers[i] =
+                        new Searcher(_evaluator.create(_myPiece), _table);
+                    searchers[i].setMoveOrdering(_ordering);
+                    searchers[i].setSelectivity(_selectivity);
+                }
+            }
+            _searchers = searchers;
+            _helpers = new Thread[n - 1];
+        }
+        if (_boards == null || _boards.length != n) {
+            Board[] boards = new Board[n];
+            for (int i = 0; i < n; i += 1) {
+                if (_boards != null && i < _boards.length) {
+                    boards[i] = _boards[i];
+                } else {
+                    boards[i] = new Board();
                 }
-                board.undo();
             }
+            _boards = boards;
         }
-        return bestSoFar;
     }
 
+    /** Judge positions with Evaluators created from TEMPLATE (see
+     *  Evaluator.create).  Changing evaluators clears my transposition
+     *  table, whose scores would no longer be comparable. */
+    void setEvaluator(Evaluator template) {
+        if (!template.name().equals(_evaluator.name())) {
+            _evaluator = template;
+            _searchers = null;
+            if (_table != null) {
+                _table.clear();
+            }
+        }
+    }
 
-    /** Searching at level 0 simply returns a static estimate
-     * of the BOARD value. The move should have maximal value
-     * or have value > BETA if SENSE ==1. BETA <= ALPHA*/
-    private int simpleFindMove(Board board, int sense, int alpha, int beta) {
-        if (sense == 1) {
-            return simpleFindMaxMove(board, alpha, beta);
-        } else {
-            return simpleFindMinMove(board, alpha, beta);
+    /** Start my helper threads (Lazy SMP): each copies BOARD into its
+     *  own board and searches that by iterative deepening, for at most
+     *  BUDGET nanoseconds after START, sharing my transposition table.
+     *  Helpers report no moves; they only fill the table with results
+     *  that let the main search cut off sooner.  Odd-numbered helpers
+     *  start one iteration deeper than even-numbered ones, so that they
+     *  tend to work ahead of the main search rather than duplicating
+     *  it. */
+    private void startHelpers(Board board, long start, long budget) {
+        for (int i = 0; i < _helpers.length; i += 1) {
+            Searcher helper = _searchers[i + 1];
+            Board mine = _boards[i + 1];
+            mine.copy(board);
+            helper.clearStop();
+            int first = 1 + i % 2;
+            _helpers[i] = new Thread(() ->
+                helper.deepen(mine, first, maxDepth(mine), start, budget,
+                              true));
+            _helpers[i].setDaemon(true);
+            _helpers[i].start();
         }
     }
 
-    /** Searching at level 0 simply returns a static estimate
-     * of the BOARD value. The move should have maximal value
-     * or have value > BETA if SENSE ==1. BETA <= ALPHA*/
-    private int simpleFindMaxMove(Board board, int alpha, int beta) {
-        Piece winner = board.turn().opponent();
-        ArrayList<Move> myMvs = myPossibleMoves();
-        int bestSoFar;
-        int nextValue;
-        bestSoFar = -INFTY;
-        if ((board.winner() != null) && (winner == WHITE)) {
-            return INFTY;
-        } else if ((board.winner() != null) && (winner == BLACK)) {
-            return -INFTY;
+    /** Stop my helper threads and wait for them to finish. */
+    private void stopHelpers() {
+        for (int i = 0; i < _helpers.length; i += 1) {
+            _searchers[i + 1].stop();
         }
-        for (Move m : myMvs) {
-            board.makeAove(m);
-            nextValue = staticScore(board);
-            if (nextValue > bestSoFar) {
-                bestSoFar = nextValue;
-                alpha = max(alpha, nextValue);
-                _lastFoundMove = m;
-                if (beta <= alpha) {
-                    board.undo();
-                    break;
+        for (Thread helper : _helpers) {
+            boolean done = false;
+            while (!done) {
+                try {
+                    helper.join();
+                    done = true;
+                } catch (InterruptedException excp) {
+                    /* Keep waiting: the helper is about to stop. */
                 }
             }
-            board.undo();
         }
-        return bestSoFar;
     }
 
-    /** Searching at level 0 simply returns a static estimate
-     * of the BOARD value. The move should have maximal value
-     * or have value < ALPHA if SENSE == -1. BETA <= ALPHA*/
-    private int simpleFindMinMove(Board board, int alpha, int beta) {
-        Piece winner = board.turn().opponent();
-        ArrayList<Move> myMvs = myPossibleMoves();
-        int bestSoFar;
-        int nextValue;
-        bestSoFar = INFTY;
-        if ((board.winner() != null) && (winner == WHITE)) {
-            return INFTY;
-        } else if ((board.winner() != null) && (winner == BLACK)) {
-            return -INFTY;
+    /** Turn move ordering on iff ON.  It is normally on; turning it off is
+     *  useful for measuring its effect. */
+    void setMoveOrdering(boolean on) {
+        _ordering = on;
+        if (_searchers != null) {
+            for (Searcher searcher : _searchers) {
+                searcher.setMoveOrdering(on);
+            }
         }
-        for (Move m : myMvs) {
-            board.makeAove(m);
-            nextValue = staticScore(board);
-            if (nextValue < bestSoFar) {
-                bestSoFar = nextValue;
-                beta = min(beta, nextValue);
-                _lastFoundMove = m;
-                if (beta <= alpha) {
-                    board.undo();
-                    break;
-                }
+    }
+
+    /** Search as selectively as SELECTIVITY says.  Initially,
+     *  Selectivity.NONE, so that searches to a given depth are exact;
+     *  when playing, I take the setting from my controller. */
+    void setSelectivity(Selectivity selectivity) {
+        _selectivity = selectivity;
+        if (_searchers != null) {
+            for (Searcher searcher : _searchers) {
+                searcher.setSelectivity(selectivity);
             }
-            board.undo();
         }
-        return bestSoFar;
     }
 
-    /** Return a heuristically determined maximum search depth
-     *  based on characteristics of BOARD. */
-    private int maxDepth(Board board) {
-        return _depth;
+    /** Search BOARD to exactly DEPTH, with no time limit, and return its
+     *  value.  The move chosen is then bestMove(), and the number of
+     *  nodes visited (by all threads) is nodes().  Intended for tests and
+     *  benchmarks. */
+    int searchToDepth(Board board, int depth) {
+        if (_searchers == null) {
+            setThreads(1);
+        }
+        stopPondering(null);
+        long start = System.nanoTime();
+        _table.resetStatistics();
+        startHelpers(board, start, Searcher.NO_LIMIT);
+        _boards[0].copy(board);
+        int value = _searchers[0].search(_boards[0], depth);
+        stopHelpers();
+        _stats = collectStats(_searchers.length, System.nanoTime() - start);
+        _nodes = _stats.nodes();
+        return value;
     }
 
+    /** Return the move chosen by the last search. */
+    Move bestMove() {
+        return _searchers[0].bestMove();
+    }
 
-    /** Return a heuristic value for BOARD.*/
-    private int staticScore(Board board) {
-        int myScore = 0;
-        for (Square q : board.queens()) {
-            if (board.get(q) == myPiece().opponent()) {
-                Directions:
-                for (int d = 0; d < 8; d++) {
-                    for (int s = 1; s <= 5; s++) {
-                        if (!q.existsMove(d, s)
-                                || board.get(q.queenMove(d, s)) != EMPTY) {
-                            continue Directions;
-                        } else {
-                            myScore++;
-                        }
-                    }
-                }
-            }
-        }
-        if (myPiece() == WHITE) {
-            return myScore;
-        } else {
-            return -myScore;
-        }
+    /** Return the number of nodes visited in choosing my last move, or
+     *  by the last searchToDepth, summed over all threads. */
+    @Override
+    long nodes() {
+        return _nodes;
     }
 
-    /** Return my possible moves list. */
-    private ArrayList<Move> myPossibleMoves() {
-        ArrayList<Move> moves = new ArrayList<>();
-        Iterator mvi = board().legalMoves(myPiece());
-        while (mvi.hasNext()) {
-            moves.add((Move) mvi.next());
-        }
-        if (moves.size() > FINAL) {
-            _depth = 0;
-        } else {
-            _depth = FINAL_TURN;
-        }
-        return moves;
+    /** Return the statistics of the search for my last move, or of the
+     *  last searchToDepth, or null if my last move was not searched for
+     *  (because it came from the book or the endgame solver). */
+    SearchStats searchStats() {
+        return _stats;
     }
 
-    /** Return my possible moves list. */
-    private void myStrategy() {
-        int m = 0;
-        Iterator mvi = board().legalMoves(myPiece());
-        while (mvi.hasNext()) {
-            mvi.next();
-            m++;
-            if (m > FINAL) {
-                _depth = 0;
-                return;
-            }
+    /** Return the statistics of the last searches by my first N
+     *  Searchers, which took NANOS nanoseconds in all. */
+    private SearchStats collectStats(int n, long nanos) {
+        SearchStats stats =
+            new SearchStats(_searchers[0].depth(), nanos, _table);
+        for (int i = 0; i < n; i += 1) {
+            _searchers[i].collect(stats);
         }
-        _depth = FINAL_TURN;
+        return stats;
     }
 
-    /** Return my possible moves list. */
-    private int _depth = 0;
+    /** Return my transposition table, or null if I have not yet
+     *  searched. */
+    TranspositionTable transpositionTable() {
+        return _table;
+    }
+
+    /** Return a heuristically determined maximum search depth
+     *  based on characteristics of BOARD. */
+    private int maxDepth(Board board) {
+        return Searcher.MAX_DEPTH;
+    }
+
+    /** Results of earlier searches, kept from move to move and shared by
+     *  all my threads. */
+    private TranspositionTable _table;
+
+    /** One Searcher for each thread; _searchers[0] is the main search,
+     *  run on the caller's thread, and the rest are its helpers. */
+    private Searcher[] _searchers;
+
+    /** The boards searched by each of my Searchers, kept from move to
+     *  move and set to the game's position before each search, so that
+     *  no Board is allocated per move. */
+    private Board[] _boards;
+
+    /** The threads running _searchers[1 ..] during a search. */
+    private Thread[] _helpers;
+
+    /** True iff moves are ordered before being searched. */
+    private boolean _ordering = true;
+
+    /** How selective my searches are. */
+    private Selectivity _selectivity = Selectivity.NONE;
+
+    /** Solver for separated endgames, or null if not yet needed. */
+    private Endgame _endgame;
+
+    /** The thread searching the position pondered, or null if I am not
+     *  pondering. */
+    private Thread _ponderer;
+
+    /** The key of the position pondered. */
+    private long _ponderKey;
+
+    /** The move found by pondering, or null if none yet. */
+    private volatile Move _ponderMove;
+
+    /** Value of System.nanoTime() when I last started pondering. */
+    private long _ponderStart;
+
+    /** Time, in nanoseconds, spent in the last pondering. */
+    private long _ponderNanos;
+
+    /** The value of nodes(). */
+    private long _nodes;
+
+    /** The value of searchStats(). */
+    private SearchStats _stats;
 
+    /** Template for my Searchers' Evaluators. */
+    private Evaluator _evaluator = new TerritoryEvaluator();
 
 }
@@ -1,13 +1,15 @@
 package amazons;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Iterator;
 import java.util.Formatter;
 import java.util.Collections;
+import java.util.Random;
 import static amazons.Piece.*;
 import static amazons.Move.mv;
+import static amazons.SquareMask.*;
 
 
 /** The state of an Amazons Game.
@@ -18,6 +20,18 @@ class Board {
     /** The number of squares on a side of the board. */
     static final int SIZE = 10;
 
+    /** An upper bound on the number of legal moves in any position with
+     *  four queens per side: each queen has at most 35 destinations, and
+     *  each destination at most 35 spear throws. */
+    static final int MAX_MOVES = 4 * 35 * 35;
+
+    /** The largest number of squares reachable by one queen move: that
+     *  of a central square on an empty board. */
+    static final int MAX_REACH = 4 * (SIZE - 1) - 1;
+
+    /** Initial capacity of the move history. */
+    private static final int INIT_HISTORY = 128;
+
     /** Initializes a game board with SIZE squares on a side in the
      *  initial position. */
     Board() {
@@ -29,46 +43,36 @@ class Board {
         copy(model);
     }
 
-    /** Copies MODEL into me. */
+    /** Copies MODEL into me.  Reuses my move history's storage when it
+     *  is large enough, so that copying into a board kept for the
+     *  purpose allocates nothing. */
     void copy(Board model) {
         if (model == this) {
             return;
         } else {
-            this._sq2Ps = new HashMap<>();
-            for (Square s : model._sq2Ps.keySet()) {
-                this._sq2Ps.put(Square.sq(s.col(), s.row()),
-                        model._sq2Ps.get(s));
-            }
+            this._whiteLo = model._whiteLo;
+            this._whiteHi = model._whiteHi;
+            this._blackLo = model._blackLo;
+            this._blackHi = model._blackHi;
+            this._spearLo = model._spearLo;
+            this._spearHi = model._spearHi;
             this._turn = model._turn;
+            this._key = model._key;
             this._winner = model._winner;
-            this._mvs = new ArrayList<>();
-            this._mvs.addAll(model._mvs);
-            this._queens = new ArrayList<>();
-            this._queens.addAll(model._queens);
-            this._spears = new ArrayList<>();
-            this._spears.addAll(model._spears);
+            if (this._mvs == null || this._mvs.length < model._numMoves) {
+                this._mvs = new int[model._mvs.length];
+            }
+            System.arraycopy(model._mvs, 0, this._mvs, 0, model._numMoves);
             this._numMoves = model._numMoves;
+            this._counts.copy(model._counts);
         }
     }
 
     /** Clears the board to the initial position. */
     void init() {
-        _sq2Ps = new HashMap<>();
-        _queens = new ArrayList<>();
-        _spears = new ArrayList<>();
-        for (int x = 0; x < SIZE; x++) {
-            for (int y = 0; y < SIZE; y++) {
-                put(Piece.EMPTY, x, y);
-            }
-        }
-        _sq2Ps.remove(Square.sq(0, 3));
-        _sq2Ps.remove(Square.sq(3, 0));
-        _sq2Ps.remove(Square.sq(6, 0));
-        _sq2Ps.remove(Square.sq(9, 3));
-        _sq2Ps.remove(Square.sq(0, 6));
-        _sq2Ps.remove(Square.sq(3, 9));
-        _sq2Ps.remove(Square.sq(6, 9));
-        _sq2Ps.remove(Square.sq(9, 6));
+        _whiteLo = _whiteHi = _blackLo = _blackHi = _spearLo = _spearHi = 0;
+        _key = 0;
+        _counts.clear();
         put(Piece.WHITE, 0, 3);
         put(Piece.WHITE, 3, 0);
         put(Piece.WHITE, 6, 0);
@@ -79,7 +83,7 @@ class Board {
         put(Piece.BLACK, 9, 6);
         _turn = WHITE;
         _winner = EMPTY;
-        _mvs = new ArrayList<>();
+        _mvs = new int[INIT_HISTORY];
         _numMoves = 0;
     }
 
@@ -88,24 +92,41 @@ class Board {
         return _turn;
     }
 
+    /** Return the Zobrist key of the current position: a 64-bit hash of
+     *  the queens, the spears, and the side to move, maintained
+     *  incrementally as the position changes.  Equal positions have equal
+     *  keys, however they were reached. */
+    long key() {
+        return _key;
+    }
+
+    /** Return the Zobrist key of the current position computed from
+     *  scratch, for checking key(). */
+    long computeKey() {
+        long key = _turn == BLACK ? BLACK_TO_MOVE : 0;
+        for (Square s : Square.SQUARES) {
+            key ^= pieceKey(get(s), s.index());
+        }
+        return key;
+    }
+
     /** Return the number of moves (that have not been undone) for this
      *  board. */
     int numMoves() {
         return _numMoves;
     }
 
+    /** Return move number K (0 <= K < numMoves()) of the game so far,
+     *  packed as for Move.pack. */
+    int move(int k) {
+        return _mvs[k];
+    }
+
     /** Return the winner in the current position, or null if the game is
      *  not yet finished. */
     Piece winner() {
-        for (Square q : queens()) {
-            if (get(q) == _turn) {
-                for (int d = 0; d <= 7; d++) {
-                    if (q.existsMove(d, 1)
-                            && _sq2Ps.get(q.queenMove(d, 1)) == EMPTY) {
-                        return null;
-                    }
-                }
-            }
+        if (!hasNoMove(_turn)) {
+            return null;
         }
         _winner = _turn.opponent();
         return _winner;
@@ -113,28 +134,18 @@ class Board {
 
     /** Return whether P has no move. */
     boolean hasNoMove(Piece p) {
-        for (Square q : queens()) {
-            if (get(q) == p) {
-                for (int d = 0; d <= 7; d++) {
-                    if (q.existsMove(d, 1)
-                            && _sq2Ps.get(q.queenMove(d, 1)) == EMPTY) {
-                        return false;
-                    }
-                }
-            }
-        }
-        return true;
+        return _counts.mobility(p) == 0;
     }
 
     /** Return the contents the square at S. */
     final Piece get(Square s) {
-        return _sq2Ps.get(s);
+        return get(s.index());
     }
 
     /** Return the contents of the square at (COL, ROW), where
      *  0 <= COL, ROW <= 9. */
     final Piece get(int col, int row) {
-        return _sq2Ps.get(Square.sq(col, row));
+        return get(Square.sq(col, row));
     }
 
     /** Return the contents of the square at COL ROW. */
@@ -142,19 +153,80 @@ class Board {
         return get(col - 'a', row - '1');
     }
 
-    /** Return the squares list of the board. */
-    final HashMap<Square, Piece> getPiece() {
-        return _sq2Ps;
+    /** Return the contents of the square whose index is INDEX. */
+    private Piece get(int index) {
+        if (contains(_whiteLo, _whiteHi, index)) {
+            return WHITE;
+        } else if (contains(_blackLo, _blackHi, index)) {
+            return BLACK;
+        } else if (contains(_spearLo, _spearHi, index)) {
+            return SPEAR;
+        } else {
+            return EMPTY;
+        }
+    }
+
+    /** Return the reach counts (see ReachCounts) of the current
+     *  position, kept up to date as the board changes.  They must not be
+     *  modified. */
+    ReachCounts counts() {
+        return _counts;
     }
 
     /** Return the queen squares list of the board. */
     final List<Square> queens() {
-        return _queens;
+        return squares(_whiteLo | _blackLo, _whiteHi | _blackHi);
     }
 
     /** Return the queen squares list of the board. */
     final List<Square> spears() {
-        return _spears;
+        return squares(_spearLo, _spearHi);
+    }
+
+    /** Return the number of squares containing P. */
+    final int count(Piece p) {
+        return size(maskLo(p), maskHi(p));
+    }
+
+    /** Return the low word of the mask (see SquareMask) of the squares
+     *  containing P. */
+    final long maskLo(Piece p) {
+        switch (p) {
+        case WHITE:
+            return _whiteLo;
+        case BLACK:
+            return _blackLo;
+        case SPEAR:
+            return _spearLo;
+        default:
+            return ~(_whiteLo | _blackLo | _spearLo);
+        }
+    }
+
+    /** Return the high word of the mask (see SquareMask) of the squares
+     *  containing P. */
+    final long maskHi(Piece p) {
+        switch (p) {
+        case WHITE:
+            return _whiteHi;
+        case BLACK:
+            return _blackHi;
+        case SPEAR:
+            return _spearHi;
+        default:
+            return ~(_whiteHi | _blackHi | _spearHi) & HI_BITS;
+        }
+    }
+
+    /** Return the squares in the mask LO, HI in order of index. */
+    private static List<Square> squares(long lo, long hi) {
+        ArrayList<Square> result = new ArrayList<>(size(lo, hi));
+        for (int k = first(lo, hi); k >= 0; k = first(lo, hi)) {
+            result.add(Square.sq(k));
+            lo &= ~SquareMask.lo(k);
+            hi &= ~SquareMask.hi(k);
+        }
+        return result;
     }
 
     /** Set square S to P. */
@@ -164,12 +236,26 @@ class Board {
 
     /** Set square (COL, ROW) to P. */
     final void put(Piece p, int col, int row) {
-        _sq2Ps.put(Square.sq(col, row), p);
-        if (p == WHITE || p == BLACK) {
-            _queens.add(Square.sq(col, row));
+        Square s = Square.sq(col, row);
+        long lo = SquareMask.lo(s), hi = SquareMask.hi(s);
+        _key ^= pieceKey(get(s), s.index()) ^ pieceKey(p, s.index());
+        _whiteLo &= ~lo;
+        _whiteHi &= ~hi;
+        _blackLo &= ~lo;
+        _blackHi &= ~hi;
+        _spearLo &= ~lo;
+        _spearHi &= ~hi;
+        if (p == WHITE) {
+            _whiteLo |= lo;
+            _whiteHi |= hi;
+        } else if (p == BLACK) {
+            _blackLo |= lo;
+            _blackHi |= hi;
         } else if (p == SPEAR) {
-            _spears.add(Square.sq(col, row));
+            _spearLo |= lo;
+            _spearHi |= hi;
         }
+        _counts.set(s.index(), p);
         _winner = EMPTY;
     }
 
@@ -178,6 +264,48 @@ class Board {
         put(p, col - 'a', row - '1');
     }
 
+    /** Store into RESULT[0] and RESULT[1] the low and high words of the
+     *  mask of squares reachable by an unblocked queen move from FROM,
+     *  treating ASEMPTY (if non-null) as empty. */
+    void reachable(Square from, Square asEmpty, long[] result) {
+        long rLo, rHi;
+        rLo = rHi = 0;
+        for (int d = 0; d < 8; d += 1) {
+            reachable(from, d, asEmpty, result);
+            rLo |= result[0];
+            rHi |= result[1];
+        }
+        result[0] = rLo;
+        result[1] = rHi;
+    }
+
+    /** Store into RESULT[0] and RESULT[1] the low and high words of the
+     *  mask of squares reachable by an unblocked queen move from FROM in
+     *  direction DIR, treating ASEMPTY (if non-null) as empty.  The squares
+     *  are found by repeatedly shifting FROM one step in DIR and masking
+     *  off occupied squares. */
+    void reachable(Square from, int dir, Square asEmpty, long[] result) {
+        long emptyLo = ~(_whiteLo | _blackLo | _spearLo),
+            emptyHi = ~(_whiteHi | _blackHi | _spearHi);
+        if (asEmpty != null) {
+            emptyLo |= SquareMask.lo(asEmpty);
+            emptyHi |= SquareMask.hi(asEmpty);
+        }
+        long rLo, rHi, gLo, gHi;
+        rLo = rHi = 0;
+        gLo = SquareMask.lo(from);
+        gHi = SquareMask.hi(from);
+        while (gLo != 0 || gHi != 0) {
+            long nLo = shiftLo(gLo, gHi, dir) & emptyLo;
+            gHi = shiftHi(gLo, gHi, dir) & emptyHi;
+            gLo = nLo;
+            rLo |= gLo;
+            rHi |= gHi;
+        }
+        result[0] = rLo;
+        result[1] = rHi;
+    }
+
     /** Return true iff FROM - TO is an unblocked queen move on the current
      *  board, ignoring the contents of ASEMPTY, if it is encountered.
      *  For this to be true, FROM-TO must be a queen move and the
@@ -187,24 +315,20 @@ class Board {
         if (!from.isQueenMove(to)) {
             return false;
         }
-        int d = from.direction(to);
-        int dCol = to.col() - from.col();
-        int dRow = to.row() - from.row();
-        for (int s = 1; s <= Math.max(Math.abs(dCol), Math.abs(dRow)); s++) {
-            Square way = from.queenMove(d, s);
-            Piece woKao = this._sq2Ps.get(way);
-            if (!Square.exists(way.col(), way.row())
-                    || (woKao != Piece.EMPTY && way != asEmpty)) {
-                return false;
-            }
+        long pathLo = from.betweenLo(to) | SquareMask.lo(to),
+            pathHi = from.betweenHi(to) | SquareMask.hi(to);
+        if (asEmpty != null) {
+            pathLo &= ~SquareMask.lo(asEmpty);
+            pathHi &= ~SquareMask.hi(asEmpty);
         }
-        return true;
+        return (pathLo & (_whiteLo | _blackLo | _spearLo)) == 0
+            && (pathHi & (_whiteHi | _blackHi | _spearHi)) == 0;
     }
 
     /** Return true iff FROM is a valid starting square for a move. */
     boolean isLegal(Square from) {
         return Square.exists(from.col(), from.row())
-                && _turn == _sq2Ps.get(from);
+                && _turn == get(from);
     }
 
     /** Return true iff FROM-TO is a valid first part of move, ignoring
@@ -234,50 +358,83 @@ class Board {
     /** Move according to MOVE, assuming it is a legal move. */
     void makeMove(Move move) {
         assert isLegal(move);
-        _mvs.add(move);
-        _numMoves++;
-        _sq2Ps.remove(move.from());
-        _sq2Ps.put(move.from(), Piece.EMPTY);
-        _queens.remove(move.from());
-        _sq2Ps.remove(move.to());
-        _sq2Ps.put(move.to(), _turn);
-        _queens.add(move.to());
-        _sq2Ps.remove(move.spear());
-        _sq2Ps.put(move.spear(), Piece.SPEAR);
-        _spears.add(move.spear());
-        _turn = _turn.opponent();
+        makeAove(move);
     }
 
     /** Move according to MOVE, assuming it is a legal move. */
     void makeAove(Move move) {
-        _mvs.add(move);
+        makeMove(move.packed());
+    }
+
+    /** Make the move whose packed representation (see Move.pack) is
+     *  PACKED, assuming it is a legal move.  Unlike makeMove(Move), does
+     *  not check legality, and allocates nothing, so that it may be used
+     *  freely during search. */
+    void makeMove(int packed) {
+        if (_numMoves == _mvs.length) {
+            _mvs = Arrays.copyOf(_mvs, 2 * _mvs.length);
+        }
+        _mvs[_numMoves] = packed;
         _numMoves++;
-        _sq2Ps.remove(move.from());
-        _sq2Ps.put(move.from(), Piece.EMPTY);
-        _queens.remove(move.from());
-        _sq2Ps.remove(move.to());
-        _sq2Ps.put(move.to(), _turn);
-        _queens.add(move.to());
-        _sq2Ps.remove(move.spear());
-        _sq2Ps.put(move.spear(), Piece.SPEAR);
-        _spears.add(move.spear());
+        int from = Move.fromIndex(packed), to = Move.toIndex(packed),
+            spear = Move.spearIndex(packed);
+        long moveLo = SquareMask.lo(from) | SquareMask.lo(to),
+            moveHi = SquareMask.hi(from) | SquareMask.hi(to);
+        if (_turn == WHITE) {
+            _whiteLo ^= moveLo;
+            _whiteHi ^= moveHi;
+        } else {
+            _blackLo ^= moveLo;
+            _blackHi ^= moveHi;
+        }
+        _spearLo |= SquareMask.lo(spear);
+        _spearHi |= SquareMask.hi(spear);
+        _counts.set(from, EMPTY);
+        _counts.set(to, _turn);
+        _counts.set(spear, SPEAR);
+        _key ^= moveKey(_turn, from, to, spear);
         _turn = _turn.opponent();
     }
 
     /** Undo one move.  Has no effect on the initial board. */
     void undo() {
-        Move u = _mvs.remove(_numMoves - 1);
+        if (_numMoves == 0) {
+            return;
+        }
         _numMoves--;
+        int packed = _mvs[_numMoves];
         _turn = _turn.opponent();
-        _sq2Ps.remove(u.spear());
-        _sq2Ps.put(u.spear(), Piece.EMPTY);
-        _spears.remove(u.spear());
-        _sq2Ps.remove(u.to());
-        _sq2Ps.put(u.to(), Piece.EMPTY);
-        _queens.remove(u.to());
-        _sq2Ps.remove(u.from());
-        _sq2Ps.put(u.from(), _turn);
-        _queens.add(u.from());
+        int from = Move.fromIndex(packed), to = Move.toIndex(packed),
+            spear = Move.spearIndex(packed);
+        _spearLo &= ~SquareMask.lo(spear);
+        _spearHi &= ~SquareMask.hi(spear);
+        long moveLo = SquareMask.lo(from) | SquareMask.lo(to),
+            moveHi = SquareMask.hi(from) | SquareMask.hi(to);
+        if (_turn == WHITE) {
+            _whiteLo ^= moveLo;
+            _whiteHi ^= moveHi;
+        } else {
+            _blackLo ^= moveLo;
+            _blackHi ^= moveHi;
+        }
+        _counts.set(spear, EMPTY);
+        _counts.set(to, EMPTY);
+        _counts.set(from, _turn);
+        _key ^= moveKey(_turn, from, to, spear);
+    }
+
+    /** Return the change to the Zobrist key caused by SIDE moving from
+     *  the square with index FROM to that with index TO and throwing a
+     *  spear to the square with index SPEAR. */
+    private static long moveKey(Piece side, int from, int to, int spear) {
+        return pieceKey(side, from) ^ pieceKey(side, to)
+            ^ pieceKey(SPEAR, spear) ^ BLACK_TO_MOVE;
+    }
+
+    /** Return the Zobrist key component for P on the square with index
+     *  INDEX (0 if P is EMPTY). */
+    private static long pieceKey(Piece p, int index) {
+        return ZOBRIST[p.ordinal()][index];
     }
 
     /** Return an Iterator over the Squares that are reachable by an
@@ -302,61 +459,92 @@ class Board {
         return new LegalMoveIterator(side);
     }
 
+    /** Store the packed forms (see Move.pack) of all legal moves for SIDE
+     *  (regardless of whose turn it is) into MOVES, starting at index 0,
+     *  and return how many there are.  MOVES must have room for all of
+     *  them; MAX_MOVES always suffices for a board with four queens per
+     *  side.  Allocates nothing, so that a search may keep one buffer per
+     *  ply and generate into it at every node. */
+    int legalMoves(Piece side, int[] moves) {
+        long qLo = side == WHITE ? _whiteLo : _blackLo,
+            qHi = side == WHITE ? _whiteHi : _blackHi;
+        int n;
+        n = 0;
+        for (int from = first(qLo, qHi); from >= 0; from = first(qLo, qHi)) {
+            qLo &= ~SquareMask.lo(from);
+            qHi &= ~SquareMask.hi(from);
+            Square start = Square.sq(from);
+            int numTo = reachableFrom(start, null, _toSquares);
+            for (int i = 0; i < numTo; i += 1) {
+                int to = _toSquares[i];
+                int numSpears =
+                    reachableFrom(Square.sq(to), start, _spearSquares);
+                for (int j = 0; j < numSpears; j += 1) {
+                    moves[n] = Move.pack(from, to, _spearSquares[j]);
+                    n += 1;
+                }
+            }
+        }
+        return n;
+    }
+
+    /** Store into RESULT the indices of the Squares that are reachable by
+     *  an unblocked queen move from FROM, treating ASEMPTY (if non-null) as
+     *  EMPTY, and return how many there are.  The squares come in the
+     *  same order as from reachableFrom(FROM, ASEMPTY): by direction, and
+     *  outward within each direction.  Each ray is scanned once, stopping
+     *  at its first obstacle.  RESULT must have room for MAX_REACH
+     *  squares. */
+    int reachableFrom(Square from, Square asEmpty, short[] result) {
+        int n;
+        n = 0;
+        for (int d = 0; d < 8; d += 1) {
+            for (Square to : from.ray(d)) {
+                if (!isEmpty(to.index()) && to != asEmpty) {
+                    break;
+                }
+                result[n] = (short) to.index();
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /** Return true iff the square with index INDEX is empty. */
+    private boolean isEmpty(int index) {
+        return !contains(_whiteLo | _blackLo | _spearLo,
+                         _whiteHi | _blackHi | _spearHi, index);
+    }
+
     /** An iterator used by reachableFrom. */
     private class ReachableFromIterator implements Iterator<Square> {
 
         /** Iterator of all squares reachable by queen move from FROM,
          *  treating ASEMPTY as empty. */
         ReachableFromIterator(Square from, Square asEmpty) {
-            _from = from;
-            _dir = -1;
-            _steps = 0;
-            _asEmpty = asEmpty;
-            toNext();
+            _squares = new short[MAX_REACH];
+            _size = reachableFrom(from, asEmpty, _squares);
+            _next = 0;
         }
 
         @Override
         public boolean hasNext() {
-            return _dir < 8;
+            return _next < _size;
         }
 
         @Override
         public Square next() {
-            Square next = _from.queenMove(_dir, _steps);
-            toNext();
+            Square next = Square.sq(_squares[_next]);
+            _next += 1;
             return next;
         }
 
-        /** Advance _dir and _steps, so that the next valid Square is
-         *  _steps steps in direction _dir from _from. */
-        private void toNext() {
-            if (_dir < 0) {
-                _dir = 0;
-            }
-            _steps++;
-            while (hasNext()) {
-                Square to = null;
-                if (_from.existsMove(_dir, _steps)) {
-                    to = _from.queenMove(_dir, _steps);
-                }
-                if (to == null
-                    || !isUnblockedMove(_from, to, _asEmpty)) {
-                    _dir++;
-                    _steps = 1;
-                } else {
-                    break;
-                }
-            }
-        }
-
-        /** Starting square. */
-        private Square _from;
-        /** Current direction. */
-        private int _dir;
-        /** Current distance. */
-        private int _steps;
-        /** Square treated as empty. */
-        private Square _asEmpty;
+        /** Indices of the reachable squares, in _squares[0 .. _size-1]. */
+        private final short[] _squares;
+        /** Number of reachable squares. */
+        private final int _size;
+        /** Position in _squares of the next square to deliver. */
+        private int _next;
     }
 
     /** An iterator used by legalMoves. */
@@ -400,7 +588,7 @@ class Board {
             while (hasNext()) {
                 _start = Square.SQUARES[s];
                 s++;
-                if (_sq2Ps.get(_start) == _fromPiece) {
+                if (get(_start) == _fromPiece) {
                     findNextTo();
                     break;
                 }
@@ -457,20 +645,46 @@ class Board {
         for (int y = SIZE - 1; y >= 0; y--) {
             out.format("   ");
             for (int x = 0; x <= SIZE - 2; x++) {
-                out.format(_sq2Ps.get(Square.sq(x, y)).toSymbol() + " ");
+                out.format(get(x, y).toSymbol() + " ");
             }
-            out.format(_sq2Ps.get(Square.sq(SIZE - 1, y)).toSymbol());
+            out.format(get(SIZE - 1, y).toSymbol());
             out.format("\n");
         }
         return out.toString();
     }
 
+    /** ZOBRIST[p.ordinal()][k] is the random key for piece p on the square
+     *  with index k.  The row for EMPTY is all zero.  The keys come from a
+     *  fixed seed, so that keys are the same from run to run. */
+    private static final long[][] ZOBRIST =
+        new long[Piece.values().length][SIZE * SIZE];
+
+    /** The random key included when BLACK is to move. */
+    private static final long BLACK_TO_MOVE;
+
+    /** Seed for the Zobrist keys. */
+    private static final long ZOBRIST_SEED = 0x61b_a3a2_0b5L;
+
+    static {
+        Random keys = new Random(ZOBRIST_SEED);
+        for (Piece p : Piece.values()) {
+            if (p != EMPTY) {
+                for (int k = 0; k < SIZE * SIZE; k += 1) {
+                    ZOBRIST[p.ordinal()][k] = keys.nextLong();
+                }
+            }
+        }
+        BLACK_TO_MOVE = keys.nextLong();
+    }
+
     /** An empty iterator for initialization. */
     private static final Iterator<Square> NO_SQUARES =
         Collections.emptyIterator();
 
     /** Piece whose turn it is (BLACK or WHITE). */
     private Piece _turn;
+    /** Zobrist key of the current position. */
+    private long _key;
     /** Cached value of winner on this board, or EMPTY if it has not been
      *  computed. */
     private Piece _winner;
@@ -478,15 +692,17 @@ class Board {
     /** Number of moves. */
     private int _numMoves;
 
-    /** Pieces of this Board. */
-    private HashMap<Square, Piece> _sq2Ps;
+    /** The squares holding white queens, black queens, and spears, as
+     *  SquareMask low and high words.  All other squares are empty. */
+    private long _whiteLo, _whiteHi, _blackLo, _blackHi, _spearLo, _spearHi;
 
-    /** Store all moves. */
-    private ArrayList<Move> _mvs;
+    /** Scratch buffers filled in by legalMoves. */
+    private final short[] _toSquares = new short[MAX_REACH],
+        _spearSquares = new short[MAX_REACH];
 
-    /** Store all queens. */
-    private ArrayList<Square> _queens;
+    /** Store all moves, in packed form, in _mvs[0 .. _numMoves-1]. */
+    private int[] _mvs;
 
-    /** Store all spears. */
-    private ArrayList<Square> _spears;
+    /** Reach counts of the current position. */
+    private final ReachCounts _counts = new ReachCounts();
 }
@@ -44,7 +44,8 @@ class BoardWidget extends Pad {
         SQUARE_SIDE = 30,
         BOARD_SIDE = SQUARE_SIDE * 10,
         BAR_SIDE = 20,
-        SATAUS = 14;
+        SATAUS = 14,
+        INFO = 11;
 
     /** A graphical representation of an Amazons board that sends commands
      *  derived from mouse clicks to COMMANDS.  */
@@ -52,7 +53,7 @@ class BoardWidget extends Pad {
         _mode = "Human vs. Human";
         _commands = commands;
         setMouseHandler("click", this::mouseClicked);
-        setPreferredSize(BOARD_SIDE, BOARD_SIDE + BAR_SIDE);
+        setPreferredSize(BOARD_SIDE, BOARD_SIDE + 2 * BAR_SIDE);
         _clicks = new ArrayList<>();
         try {
             _whiteQueen = ImageIO.read(Utils.getResource(WHITE_QUEEN_IMAGE));
@@ -116,6 +117,13 @@ class BoardWidget extends Pad {
         g.drawString(display,
                 (winX - metrics.stringWidth(display)) / 2,
                 winY + (metrics.getMaxAscent()) / 4);
+        if (_info != null) {
+            g.setFont(new Font("Arial", Font.PLAIN, INFO));
+            metrics = g.getFontMetrics();
+            g.drawString(_info,
+                    (winX - metrics.stringWidth(_info)) / 2,
+                    winY + BAR_SIDE + (metrics.getMaxAscent()) / 4);
+        }
     }
 
     /** Indicate that winner G. */
@@ -210,6 +218,13 @@ class BoardWidget extends Pad {
         _mode = mode;
     }
 
+    /** Set the line of search statistics shown under the status to
+     *  INFO. */
+    synchronized void setInfo(String info) {
+        _info = info;
+        repaint();
+    }
+
     /** Return x-pixel coordinate of the left corners of column X
      *  relative to the upper-left corner of the board. */
     private int cx(int x) {
@@ -254,4 +269,7 @@ class BoardWidget extends Pad {
 
     /** Game Mode. */
     private String _mode;
+
+    /** Statistics of the last search, or null if none. */
+    private String _info;
 }
@@ -0,0 +1,177 @@
+package amazons;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static amazons.Piece.*;
+
+import ucb.util.CommandArgs;
+
+/** A program that builds an opening book (see OpeningBook) by searching
+ *  the positions near the start of the game.  From the initial position,
+ *  it searches each position by iterative deepening for a fixed time, as
+ *  AI would, and records the move found.  It then goes on to the
+ *  positions reached by that move and by the next best few moves, as
+ *  judged statically, until it has gone a given number of plies from the
+ *  start.  Positions reached by more than one line are searched once.
+ *  @author Zhenkai Han
+ */
+public class BookBuilder {
+
+    /** Default number of plies from the start covered by the book. */
+    static final int DEFAULT_PLIES = 4;
+
+    /** Default number of moves followed from each position. */
+    static final int DEFAULT_BREADTH = 3;
+
+    /** Default time, in seconds, spent searching each position. */
+    static final double DEFAULT_SECONDS = 5;
+
+    /** Build a book as ARGS direct (see usage). */
+    public static void main(String... args) {
+        CommandArgs options =
+            new CommandArgs("--plies={0,1} --breadth={0,1} --movetime={0,1}"
+                            + " --={1}", args);
+        if (!options.ok()) {
+            usage();
+        }
+        int plies = DEFAULT_PLIES, breadth = DEFAULT_BREADTH;
+        double seconds = DEFAULT_SECONDS;
+        try {
+            if (options.contains("--plies")) {
+                plies = Integer.parseInt(options.getFirst("--plies"));
+            }
+            if (options.contains("--breadth")) {
+                breadth = Integer.parseInt(options.getFirst("--breadth"));
+            }
+            if (options.contains("--movetime")) {
+                seconds = Double.parseDouble(options.getFirst("--movetime"));
+            }
+        } catch (NumberFormatException excp) {
+            usage();
+        }
+        if (plies < 0 || breadth < 1 || seconds < 0) {
+            usage();
+        }
+
+        List<String> files = options.get("--");
+        OpeningBook.Builder book = new OpeningBook.Builder();
+        BookBuilder builder =
+            new BookBuilder(book, plies, breadth,
+                            Math.round(seconds * 1000000000));
+        Board board = new Board();
+        builder.build(board);
+        try {
+            book.write(files.get(0));
+        } catch (IOException excp) {
+            System.err.printf("Could not write book: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+        System.out.printf("%d positions written to %s%n", book.size(),
+                          files.get(0));
+    }
+
+    /** Print a usage message and exit. */
+    private static void usage() {
+        System.err.println("Usage: java amazons.BookBuilder [--plies=N]"
+                           + " [--breadth=N] [--movetime=SECONDS] FILE");
+        System.exit(1);
+    }
+
+    /** A builder that adds to BOOK the positions up to PLIES plies from
+     *  where it starts, following the BREADTH best moves from each, and
+     *  searching each position for BUDGET nanoseconds. */
+    BookBuilder(OpeningBook.Builder book, int plies, int breadth,
+                long budget) {
+        _book = book;
+        _plies = plies;
+        _breadth = breadth;
+        _budget = budget;
+        _searcher = new Searcher(new TerritoryEvaluator(), _table);
+        _searcher.setSelectivity(Selectivity.DEFAULT);
+    }
+
+    /** Add the positions reachable from BOARD to my book, leaving BOARD
+     *  as it was. */
+    void build(Board board) {
+        build(board, 0);
+    }
+
+    /** Add the position on BOARD, PLY plies from where I started, and
+     *  those after it, to my book. */
+    private void build(Board board, int ply) {
+        if (ply >= _plies || board.winner() != null) {
+            return;
+        }
+        if (_book.visit(board.key())) {
+            return;
+        }
+        _table.clear();
+        Move best = _searcher.deepen(new Board(board), 0, Searcher.MAX_DEPTH,
+                                     System.nanoTime(), _budget, false);
+        _book.add(board.key(), best.packed(), _searcher.lastValue());
+        for (int move : followed(board, best.packed())) {
+            board.makeMove(move);
+            build(board, ply + 1);
+            board.undo();
+        }
+    }
+
+    /** Return the moves to follow from the position on BOARD: BEST, the
+     *  move found by searching it, and the next best _breadth - 1 as
+     *  judged by the static value of the positions they lead to. */
+    private int[] followed(Board board, int best) {
+        int sense = board.turn() == WHITE ? 1 : -1;
+        int n = board.legalMoves(board.turn(), _moves);
+        for (int i = 0; i < n; i += 1) {
+            board.makeMove(_moves[i]);
+            _sortKeys[i] =
+                ((long) -(sense * _evaluator.score(board)) << 32) | _moves[i];
+            board.undo();
+        }
+        Arrays.sort(_sortKeys, 0, n);
+        int[] result = new int[Math.min(_breadth, n)];
+        result[0] = best;
+        for (int i = 0, k = 1; i < n && k < result.length; i += 1) {
+            int move = (int) _sortKeys[i];
+            if (move != best) {
+                result[k] = move;
+                k += 1;
+            }
+        }
+        return result;
+    }
+
+    /** The book being built. */
+    private final OpeningBook.Builder _book;
+
+    /** Number of plies from the start covered by the book. */
+    private final int _plies;
+
+    /** Number of moves followed from each position. */
+    private final int _breadth;
+
+    /** Time, in nanoseconds, spent searching each position. */
+    private final long _budget;
+
+    /** Transposition table for my searches, cleared before each. */
+    private final TranspositionTable _table =
+        new TranspositionTable(TABLE_LOG_SIZE);
+
+    /** Searches each position. */
+    private final Searcher _searcher;
+
+    /** Judge of positions, for choosing moves to follow. */
+    private final Evaluator _evaluator = new TerritoryEvaluator();
+
+    /** Scratch space for followed. */
+    private final int[] _moves = new int[Board.MAX_MOVES];
+    /** See _moves. */
+    private final long[] _sortKeys = new long[Board.MAX_MOVES];
+
+    /** Log base 2 of the number of entries in my transposition table. */
+    private static final int TABLE_LOG_SIZE = 20;
+
+}
@@ -42,6 +42,7 @@ final class Controller {
         _playing = true;
         _winner = null;
         _board.init();
+        _timeUsed = 0;
         _white = _manualPlayerTemplate.create(WHITE, this);
         _black = _autoPlayerTemplate.create(BLACK, this);
         while (_playing) {
@@ -99,6 +100,140 @@ final class Controller {
         _randGen.setSeed(seed);
     }
 
+    /** Set the time limits for automated players to MOVELIMIT
+     *  milliseconds per move and GAMELIMIT milliseconds for all the moves
+     *  they make in a game. */
+    void setTimeLimits(long moveLimit, long gameLimit) {
+        _moveTimeLimit = moveLimit;
+        _gameTimeLimit = gameLimit;
+    }
+
+    /** Return the number of milliseconds an automated player may take
+     *  for one move. */
+    long moveTimeLimit() {
+        return _moveTimeLimit;
+    }
+
+    /** Return the number of milliseconds remaining for automated players
+     *  in the current game. */
+    long gameTimeLeft() {
+        return Math.max(0, _gameTimeLimit - _timeUsed);
+    }
+
+    /** Return the number of milliseconds an automated player may spend
+     *  choosing a move in the current position.  This is a share of the
+     *  game time left, divided among an estimate of the moves still to
+     *  be played by automated players (which, when both players are
+     *  automated, share one game clock), but no more than the per-move
+     *  limit. */
+    long timeBudget() {
+        int empty = _board.count(EMPTY);
+        long share = gameTimeLeft() / Math.max(MIN_MOVES_TO_GO, empty / 2);
+        return Math.max(0, Math.min(share, moveTimeLimit()) - SAFETY_MILLIS);
+    }
+
+    /** Record that an automated player spent MILLIS milliseconds
+     *  choosing a move. */
+    void chargeTime(long millis) {
+        _timeUsed += millis;
+    }
+
+    /** Set the number of threads automated players search with to
+     *  THREADS (at least 1). */
+    void setSearchThreads(int threads) {
+        if (threads < 1) {
+            throw error("need at least one search thread");
+        }
+        _searchThreads = threads;
+    }
+
+    /** Return the number of threads automated players search with. */
+    int searchThreads() {
+        return _searchThreads;
+    }
+
+    /** Have automated players judge positions with Evaluators created
+     *  from TEMPLATE (see Evaluator.create). */
+    void setEvaluator(Evaluator template) {
+        _evaluator = template;
+    }
+
+    /** Return the template for the Evaluators of automated players. */
+    Evaluator evaluator() {
+        return _evaluator;
+    }
+
+    /** Have automated players take their moves from BOOK while it has
+     *  them, or from no book if BOOK is null. */
+    void setBook(OpeningBook book) {
+        _book = book;
+    }
+
+    /** Return the opening book of automated players, or null if they
+     *  have none. */
+    OpeningBook book() {
+        return _book;
+    }
+
+    /** Have automated players look up small endgame areas in
+     *  TABLEBASE, or in no tablebase if TABLEBASE is null. */
+    void setTablebase(Tablebase tablebase) {
+        _tablebase = tablebase;
+    }
+
+    /** Return the endgame tablebase of automated players, or null if
+     *  they have none. */
+    Tablebase tablebase() {
+        return _tablebase;
+    }
+
+    /** Have automated players go on searching while their opponents
+     *  think (see AI) iff PONDERING. */
+    void setPondering(boolean pondering) {
+        _pondering = pondering;
+        if (!pondering) {
+            cancelPlayers();
+        }
+    }
+
+    /** Return true iff automated players search while their opponents
+     *  think. */
+    boolean pondering() {
+        return _pondering;
+    }
+
+    /** Have automated players search as selectively as SELECTIVITY
+     *  says. */
+    void setSelectivity(Selectivity selectivity) {
+        _selectivity = selectivity;
+    }
+
+    /** Return the selectivity of automated players' searches. */
+    Selectivity selectivity() {
+        return _selectivity;
+    }
+
+    /** Have automated players that play out games (see MCTSPlayer) stop
+     *  after PLAYOUTS playouts per move, if PLAYOUTS > 0, even if they
+     *  have time left.  If PLAYOUTS is 0, only time limits them. */
+    void setPlayouts(int playouts) {
+        if (playouts < 0) {
+            throw error("number of playouts must be non-negative");
+        }
+        _playouts = playouts;
+    }
+
+    /** Return the template (see Player.create) for automated players. */
+    Player autoPlayerTemplate() {
+        return _autoPlayerTemplate;
+    }
+
+    /** Return the most playouts per move automated players may make, or
+     *  0 if there is no limit. */
+    int playouts() {
+        return _playouts;
+    }
+
     /** Return the next line of input, or null if there is no more. First
      *  prompts for the line.  Trims the returned line (if any) of all
      *  leading and trailing whitespace. */
@@ -127,6 +262,12 @@ final class Controller {
         _reporter.reportMove(move);
     }
 
+    /** Report search statistics by calling reportInfo(STATS) on my
+     *  reporter. */
+    void reportInfo(SearchStats stats) {
+        _reporter.reportInfo(stats);
+    }
+
     /** A Command is pair (<pattern>, <processor>), where <pattern> is a
      *  Matcher that matches instances of a particular command, and
      *  <processor> is a functional object whose .accept method takes a
@@ -151,11 +292,20 @@ final class Controller {
         new Command("quit$", this::doQuit),
         new Command("new$", this::doNew),
         new Command("seed\\s+(\\d+)$", this::doSeed),
+        new Command("time\\s+(\\d+(?:\\.\\d*)?)\\s+(\\d+(?:\\.\\d*)?)$",
+                    this::doTime),
+        new Command("threads\\s+(\\d+)$", this::doThreads),
+        new Command("eval\\s+([a-z]+)$", this::doEval),
+        new Command("select\\s+(\\S+)$", this::doSelect),
+        new Command("playouts\\s+(\\d+)$", this::doPlayouts),
+        new Command("engine\\s+([a-z]+)$", this::doEngine),
+        new Command("ponder\\s+(on|off)$", this::doPonder),
         new Command("dump$", this::doDump),
+        new Command("perft\\s+(\\d+)(\\s+divide)?$", this::doPerft),
         new Command("undo$", this::doUndo),
         new Command(String.format("%s-%s\\(%s\\)|%s\\s+%s\\s+%s",
                 SQ, SQ, SQ, SQ, SQ, SQ), this::doMove),
-        new Command("auto\\s+([a-z]*)$",  this::doAuto),
+        new Command("auto\\s+([a-z]*)(?:\\s+([a-z]+))?$",  this::doAuto),
         new Command("manual\\s+([a-z]*)$", this::doManual)
     };
 
@@ -164,7 +314,7 @@ final class Controller {
 
     /** Check that CMND is one of the valid Amazons commands and execute it, if
      *  so, raising an IllegalArgumentException otherwise. */
-    private void executeCommand(String cmnd) {
+    void executeCommand(String cmnd) {
         if (_logFile != null) {
             _logFile.println(cmnd);
             _logFile.flush();
@@ -187,26 +337,45 @@ final class Controller {
 
 
 
+    /** Have both players stop any work they are doing in the
+     *  background (see Player.cancel). */
+    private void cancelPlayers() {
+        if (_white != null) {
+            _white.cancel();
+        }
+        if (_black != null) {
+            _black.cancel();
+        }
+    }
+
     /** Command "new". */
     private void doNew(Matcher unused) {
+        cancelPlayers();
         _board.init();
+        _timeUsed = 0;
         _winner = null;
         _winned = false;
     }
 
-    /** Command "auto" where piece is the of MAT. */
+    /** Command "auto" where piece is the of MAT, optionally followed by
+     *  the name of the kind of automated player (see Player.forName),
+     *  which is otherwise that of the automated player template. */
     private void doAuto(Matcher mat) {
-        String player = mat.group(0).split(" ")[1];
+        String player = mat.group(1);
+        Player template = mat.group(2) == null ? _autoPlayerTemplate
+            : Player.forName(mat.group(2));
+        cancelPlayers();
         if (player.equals("black")) {
-            _black = new AI().create(BLACK, this);
+            _black = template.create(BLACK, this);
         } else if (player.equals("white")) {
-            _white = new AI().create(WHITE, this);
+            _white = template.create(WHITE, this);
         }
     }
 
     /** Command "manual" where piece is the of MAT. */
     private void doManual(Matcher mat) {
         String player = mat.group(0).split(" ")[1];
+        cancelPlayers();
         if (player.equals("black")) {
             if (_view.getClass() == GUI.class) {
                 _black = new GUIPlayer((GUI) _view).create(BLACK, this);
@@ -229,6 +398,7 @@ final class Controller {
 
     /** Command "undo". */
     private void doUndo(Matcher unused) {
+        cancelPlayers();
         _board.undo();
         _board.undo();
         _winner = null;
@@ -236,6 +406,7 @@ final class Controller {
 
     /** Command "quit". */
     private void doQuit(Matcher unused) {
+        cancelPlayers();
         _playing = false;
     }
 
@@ -248,6 +419,98 @@ final class Controller {
         }
     }
 
+    /** Command "time MOVE GAME", setting the time limits for automated
+     *  players to MOVE seconds per move and GAME seconds per game, where
+     *  MOVE and GAME are the first and second groups of MAT. */
+    private void doTime(Matcher mat) {
+        setTimeLimits(Math.round(Double.parseDouble(mat.group(1)) * 1000),
+                      Math.round(Double.parseDouble(mat.group(2)) * 1000));
+    }
+
+    /** Command "threads N", setting the number of threads automated
+     *  players search with to N, the first group of MAT. */
+    private void doThreads(Matcher mat) {
+        try {
+            setSearchThreads(Integer.parseInt(mat.group(1)));
+        } catch (NumberFormatException excp) {
+            throw error("number too large");
+        }
+    }
+
+    /** Command "eval NAME", selecting the evaluator (see
+     *  Evaluator.forName) of automated players, where NAME is the first
+     *  group of MAT. */
+    private void doEval(Matcher mat) {
+        setEvaluator(Evaluator.forName(mat.group(1)));
+    }
+
+    /** Command "select SPEC", setting the selectivity (see
+     *  Selectivity.parse) of automated players' searches, where SPEC is
+     *  the first group of MAT. */
+    private void doSelect(Matcher mat) {
+        setSelectivity(Selectivity.parse(mat.group(1)));
+    }
+
+    /** Command "playouts N", limiting automated players that play out
+     *  games to N playouts per move (0 for no limit), where N is the
+     *  first group of MAT. */
+    private void doPlayouts(Matcher mat) {
+        try {
+            setPlayouts(Integer.parseInt(mat.group(1)));
+        } catch (NumberFormatException excp) {
+            throw error("number too large");
+        }
+    }
+
+    /** Command "engine NAME", making automated players created from now
+     *  on of the kind named NAME (see Player.forName), the first group
+     *  of MAT. */
+    private void doEngine(Matcher mat) {
+        _autoPlayerTemplate = Player.forName(mat.group(1));
+    }
+
+    /** Command "ponder on" or "ponder off", turning pondering by
+     *  automated players (see setPondering) on or off as the first group
+     *  of MAT says. */
+    private void doPonder(Matcher mat) {
+        setPondering(mat.group(1).equals("on"));
+    }
+
+    /** Command "perft N" or "perft N divide" (see perft), where N is the
+     *  first group of MAT. */
+    private void doPerft(Matcher mat) {
+        try {
+            perft(Integer.parseInt(mat.group(1)), mat.group(2) != null);
+        } catch (NumberFormatException excp) {
+            throw error("number too large");
+        }
+    }
+
+    /** Report the number of positions reached from the current position
+     *  by DEPTH moves (see Perft), and how fast they were counted.  If
+     *  DIVIDE, first report the number reached through each legal
+     *  move. */
+    void perft(int depth, boolean divide) {
+        Perft perft = new Perft(_board);
+        long nodes;
+        if (divide) {
+            int[] moves = new int[Board.MAX_MOVES];
+            long[] counts = new long[Board.MAX_MOVES];
+            int n = perft.divide(depth, moves, counts);
+            nodes = 0;
+            for (int i = 0; i < n; i += 1) {
+                reportNote("%s: %d", Move.mv(moves[i]), counts[i]);
+                nodes += counts[i];
+            }
+        } else {
+            nodes = perft.count(depth);
+        }
+        double seconds = perft.nanos() / 1e9;
+        reportNote("perft %d: %d nodes in %.3f s (%.0f nodes/s)", depth,
+                   nodes, seconds,
+                   seconds == 0 ? 0.0 : nodes / seconds);
+    }
+
     /** Dump the contents of the board on standard output. */
     private void doDump(Matcher unused) {
         System.out.printf("===%n%s===%n", _board);
@@ -291,4 +554,45 @@ final class Controller {
     /** Reporter for Winning. */
     private boolean _winned;
 
+    /** Default time limits, in milliseconds, for automated players: those
+     *  the testing referee applies unless told otherwise. */
+    static final long DEFAULT_MOVE_TIME = 10000, DEFAULT_GAME_TIME = 60000;
+
+    /** Time in milliseconds held back from each move's time budget to
+     *  cover reporting the move and scheduling delays. */
+    private static final long SAFETY_MILLIS = 150;
+
+    /** The fewest moves that a game's remaining time is divided among. */
+    private static final int MIN_MOVES_TO_GO = 8;
+
+    /** Time limits, in milliseconds, for each move and for all moves of
+     *  a game by automated players. */
+    private long _moveTimeLimit = DEFAULT_MOVE_TIME,
+        _gameTimeLimit = DEFAULT_GAME_TIME;
+
+    /** Milliseconds spent by automated players in the current game. */
+    private long _timeUsed;
+
+    /** Number of threads automated players search with. */
+    private int _searchThreads = 1;
+
+    /** Template for the Evaluators of automated players. */
+    private Evaluator _evaluator = new TerritoryEvaluator();
+
+    /** Opening book of automated players, or null. */
+    private OpeningBook _book;
+
+    /** Endgame tablebase of automated players, or null. */
+    private Tablebase _tablebase;
+
+    /** True iff automated players search while their opponents think. */
+    private boolean _pondering;
+
+    /** Selectivity of automated players' searches. */
+    private Selectivity _selectivity = Selectivity.DEFAULT;
+
+    /** Most playouts per move of automated players, or 0 for no
+     *  limit. */
+    private int _playouts;
+
 }
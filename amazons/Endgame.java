@@ -0,0 +1,318 @@
+package amazons;
+
+import java.util.Arrays;
+
+import static amazons.Piece.*;
+import static amazons.SquareMask.*;
+
+/** Exact analysis of positions in which the board has split into areas
+ *  that each hold the queens of only one side.  From then on neither
+ *  side can interfere with the other, so each side's fate depends only
+ *  on how many moves it can make within its own areas; the side to move
+ *  wins iff it can make more moves than its opponent.
+ *
+ *  The empty squares are divided into regions (connected by king
+ *  steps), and regions that border a common queen are combined into one
+ *  area, since that queen may enter either.  The longest sequence of
+ *  moves available in each area is found by depth-first search over
+ *  the positions of its queens and empty squares, remembering the
+ *  results for positions already seen, and stopping as soon as a
+ *  sequence fills every square of the area.  Results are kept from one
+ *  call of solve to the next, since positions recur as the game goes
+ *  on.  Areas small enough to be in the tablebase, if there is one,
+ *  are looked up there instead of being searched.  The search is
+ *  abandoned if it visits more than NODE_LIMIT positions, in which case
+ *  the position is not solved.
+ *  @author Zhenkai Han
+ */
+class Endgame {
+
+    /** The most positions searched by one call to solve. */
+    static final int NODE_LIMIT = 250000;
+
+    /** Log base 2 of the number of remembered results. */
+    private static final int MEMO_LOG_SIZE = 16;
+
+    /** An Endgame solver. */
+    Endgame() {
+        int size = 1 << MEMO_LOG_SIZE;
+        _memoEmptyLo = new long[size];
+        _memoEmptyHi = new long[size];
+        _memoQueensLo = new long[size];
+        _memoQueensHi = new long[size];
+        _memoValues = new int[size];
+        Arrays.fill(_memoValues, -1);
+    }
+
+    /** Look up small areas in TABLEBASE, or in no tablebase if it is
+     *  null. */
+    void setTablebase(Tablebase tablebase) {
+        _tablebase = tablebase;
+    }
+
+    /** Return true iff BOARD is separated (see isSeparated) and the
+     *  longest sequence of moves of each side was found in time.  If so,
+     *  moves, winner, and bestMove then describe the outcome. */
+    boolean solve(Board board) {
+        if (!isSeparated(board)) {
+            return false;
+        }
+        _nodes = 0;
+        _moves[WHITE.ordinal()] = _moves[BLACK.ordinal()] = 0;
+        _bestMove = TranspositionTable.NO_MOVE;
+        Piece turn = board.turn();
+        int bestArea = 0;
+        for (int i = 0; i < _numAreas; i += 1) {
+            Piece side = board.get(Square.sq(first(_areaQueensLo[i],
+                                                     _areaQueensHi[i])));
+            _rootMove = TranspositionTable.NO_MOVE;
+            int n = longest(_areaEmptyLo[i], _areaEmptyHi[i],
+                            _areaQueensLo[i], _areaQueensHi[i], true);
+            if (_nodes > NODE_LIMIT) {
+                return false;
+            }
+            _moves[side.ordinal()] += n;
+            if (side == turn && n > bestArea) {
+                bestArea = n;
+                _bestMove = _rootMove;
+            }
+        }
+        _winner = moves(turn) > moves(turn.opponent()) ? turn
+            : turn.opponent();
+        return true;
+    }
+
+    /** Return true iff no area of BOARD (see above) contains queens of
+     *  both sides, and no queen is a king step from an enemy queen (for
+     *  the square such a queen leaves would open its area to the enemy).
+     *  Records the areas for use by solve. */
+    boolean isSeparated(Board board) {
+        long emptyLo = board.maskLo(EMPTY), emptyHi = board.maskHi(EMPTY),
+            whiteLo = board.maskLo(WHITE), whiteHi = board.maskHi(WHITE),
+            blackLo = board.maskLo(BLACK), blackHi = board.maskHi(BLACK);
+        _numAreas = 0;
+        if ((neighborsLo(whiteLo, whiteHi) & blackLo) != 0
+            || (neighborsHi(whiteLo, whiteHi) & blackHi) != 0) {
+            return false;
+        }
+        long restLo = emptyLo, restHi = emptyHi;
+        for (int k = first(restLo, restHi); k >= 0;
+             k = first(restLo, restHi)) {
+            long regionLo = SquareMask.lo(k), regionHi = SquareMask.hi(k);
+            while (true) {
+                long grownLo = (regionLo | neighborsLo(regionLo, regionHi))
+                    & emptyLo,
+                    grownHi = (regionHi | neighborsHi(regionLo, regionHi))
+                    & emptyHi;
+                if (grownLo == regionLo && grownHi == regionHi) {
+                    break;
+                }
+                regionLo = grownLo;
+                regionHi = grownHi;
+            }
+            restLo &= ~regionLo;
+            restHi &= ~regionHi;
+            long borderLo = neighborsLo(regionLo, regionHi),
+                borderHi = neighborsHi(regionLo, regionHi);
+            long queensLo = borderLo & (whiteLo | blackLo),
+                queensHi = borderHi & (whiteHi | blackHi);
+            if ((queensLo | queensHi) != 0) {
+                addRegion(regionLo, regionHi, queensLo, queensHi);
+            }
+        }
+        for (int i = 0; i < _numAreas; i += 1) {
+            if (((_areaQueensLo[i] & whiteLo) | (_areaQueensHi[i] & whiteHi))
+                != 0
+                && ((_areaQueensLo[i] & blackLo)
+                    | (_areaQueensHi[i] & blackHi)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the most moves SIDE can make in the position last solved. */
+    int moves(Piece side) {
+        return _moves[side.ordinal()];
+    }
+
+    /** Return the side that wins the position last solved, with best
+     *  play. */
+    Piece winner() {
+        return _winner;
+    }
+
+    /** Return the first move (packed) of a longest sequence of moves for
+     *  the side to move in the position last solved, or NO_MOVE if it
+     *  has no moves. */
+    int bestMove() {
+        return _bestMove;
+    }
+
+    /** Return the number of positions searched by the last solve. */
+    int nodes() {
+        return _nodes;
+    }
+
+    /** Add the region LO, HI, bordered by the queens QUEENSLO, QUEENSHI,
+     *  to my areas, merging it with all areas that share a queen. */
+    private void addRegion(long lo, long hi, long queensLo, long queensHi) {
+        int i = 0;
+        while (i < _numAreas) {
+            if (((_areaQueensLo[i] & queensLo)
+                 | (_areaQueensHi[i] & queensHi)) != 0) {
+                lo |= _areaEmptyLo[i];
+                hi |= _areaEmptyHi[i];
+                queensLo |= _areaQueensLo[i];
+                queensHi |= _areaQueensHi[i];
+                _numAreas -= 1;
+                _areaEmptyLo[i] = _areaEmptyLo[_numAreas];
+                _areaEmptyHi[i] = _areaEmptyHi[_numAreas];
+                _areaQueensLo[i] = _areaQueensLo[_numAreas];
+                _areaQueensHi[i] = _areaQueensHi[_numAreas];
+            } else {
+                i += 1;
+            }
+        }
+        _areaEmptyLo[_numAreas] = lo;
+        _areaEmptyHi[_numAreas] = hi;
+        _areaQueensLo[_numAreas] = queensLo;
+        _areaQueensHi[_numAreas] = queensHi;
+        _numAreas += 1;
+    }
+
+    /** Return the length of the longest sequence of moves that the
+     *  queens QLO, QHI can make when the only empty squares are ELO,
+     *  EHI.  If ROOT, sets _rootMove to the first move of such a
+     *  sequence.  Returns early, with a meaningless result, once more
+     *  than NODE_LIMIT positions have been searched. */
+    private int longest(long eLo, long eHi, long qLo, long qHi,
+                        boolean root) {
+        _nodes += 1;
+        if (_nodes > NODE_LIMIT) {
+            return 0;
+        }
+        if (!root && _tablebase != null) {
+            int value = _tablebase.probe(eLo, eHi, qLo, qHi);
+            if (value != Tablebase.UNKNOWN) {
+                return value;
+            }
+        }
+        int slot = memoSlot(eLo, eHi, qLo, qHi);
+        if (!root && _memoValues[slot] >= 0 && _memoEmptyLo[slot] == eLo
+            && _memoEmptyHi[slot] == eHi && _memoQueensLo[slot] == qLo
+            && _memoQueensHi[slot] == qHi) {
+            return _memoValues[slot];
+        }
+        int upper = size(eLo, eHi), best = 0;
+        long restLo = qLo, restHi = qHi;
+        Search:
+        for (int q = first(restLo, restHi); q >= 0;
+             q = first(restLo, restHi)) {
+            restLo &= ~SquareMask.lo(q);
+            restHi &= ~SquareMask.hi(q);
+            Square from = Square.sq(q);
+            for (int d = 0; d < 8; d += 1) {
+                for (Square to : from.ray(d)) {
+                    int t = to.index();
+                    if (!contains(eLo, eHi, t)) {
+                        break;
+                    }
+                    long e1Lo = (eLo & ~SquareMask.lo(t)) | SquareMask.lo(q),
+                        e1Hi = (eHi & ~SquareMask.hi(t)) | SquareMask.hi(q),
+                        q1Lo = (qLo & ~SquareMask.lo(q)) | SquareMask.lo(t),
+                        q1Hi = (qHi & ~SquareMask.hi(q)) | SquareMask.hi(t);
+                    for (int d2 = 0; d2 < 8; d2 += 1) {
+                        for (Square spear : to.ray(d2)) {
+                            int s = spear.index();
+                            if (!contains(e1Lo, e1Hi, s)) {
+                                break;
+                            }
+                            int value =
+                                1 + longest(e1Lo & ~SquareMask.lo(s),
+                                            e1Hi & ~SquareMask.hi(s),
+                                            q1Lo, q1Hi, false);
+                            if (_nodes > NODE_LIMIT) {
+                                return 0;
+                            }
+                            if (value > best) {
+                                best = value;
+                                if (root) {
+                                    _rootMove = Move.pack(q, t, s);
+                                }
+                                if (best == upper) {
+                                    break Search;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        _memoEmptyLo[slot] = eLo;
+        _memoEmptyHi[slot] = eHi;
+        _memoQueensLo[slot] = qLo;
+        _memoQueensHi[slot] = qHi;
+        _memoValues[slot] = best;
+        return best;
+    }
+
+    /** Return the low word of the squares a king step from the mask LO,
+     *  HI. */
+    private static long neighborsLo(long lo, long hi) {
+        long result = 0;
+        for (int d = 0; d < 8; d += 1) {
+            result |= shiftLo(lo, hi, d);
+        }
+        return result;
+    }
+
+    /** Return the high word of the squares a king step from the mask LO,
+     *  HI. */
+    private static long neighborsHi(long lo, long hi) {
+        long result = 0;
+        for (int d = 0; d < 8; d += 1) {
+            result |= shiftHi(lo, hi, d);
+        }
+        return result;
+    }
+
+    /** Return the memo slot for the position with empty squares ELO, EHI
+     *  and queens QLO, QHI. */
+    private static int memoSlot(long eLo, long eHi, long qLo, long qHi) {
+        long h = eLo * 0x9E3779B97F4A7C15L ^ eHi * 0xC2B2AE3D27D4EB4FL
+            ^ qLo * 0x165667B19E3779F9L ^ qHi * 0x27D4EB2F165667C5L;
+        return (int) (h >>> (64 - MEMO_LOG_SIZE));
+    }
+
+    /** The areas found by the last isSeparated: the empty squares and
+     *  queens of area i are _areaEmptyLo/Hi[i] and _areaQueensLo/Hi[i],
+     *  for 0 <= i < _numAreas. */
+    private final long[] _areaEmptyLo = new long[Board.SIZE * Board.SIZE],
+        _areaEmptyHi = new long[Board.SIZE * Board.SIZE],
+        _areaQueensLo = new long[Board.SIZE * Board.SIZE],
+        _areaQueensHi = new long[Board.SIZE * Board.SIZE];
+    /** Number of areas found by the last isSeparated. */
+    private int _numAreas;
+
+    /** Remembered results of longest, indexed by memoSlot. */
+    private final long[] _memoEmptyLo, _memoEmptyHi,
+        _memoQueensLo, _memoQueensHi;
+    /** Remembered values of longest, or -1 for unused slots. */
+    private final int[] _memoValues;
+
+    /** Table of small areas, or null. */
+    private Tablebase _tablebase;
+
+    /** Number of positions searched by the current solve. */
+    private int _nodes;
+    /** The most moves of each side, indexed by Piece ordinal. */
+    private final int[] _moves = new int[Piece.values().length];
+    /** The winner of the position last solved. */
+    private Piece _winner;
+    /** The best move for the side to move in the position last solved. */
+    private int _bestMove;
+    /** The first move of the sequence found by the last root call of
+     *  longest. */
+    private int _rootMove;
+}
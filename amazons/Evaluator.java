@@ -0,0 +1,37 @@
+package amazons;
+
+import static amazons.Utils.error;
+
+/** A heuristic judge of positions, used at the leaves of an AI's search.
+ *  An Evaluator may keep scratch space between calls, and so must not be
+ *  shared between threads: each search thread uses its own, obtained
+ *  from a template by create.
+ *  @author Zhenkai Han
+ */
+interface Evaluator {
+
+    /** Return a new Evaluator of my concrete type that judges positions
+     *  for the player of SIDE (WHITE or BLACK). */
+    Evaluator create(Piece side);
+
+    /** Return a heuristic value of BOARD, a position that no one has
+     *  won.  Positive values favor White and negative values favor
+     *  Black. */
+    int score(Board board);
+
+    /** Return the name by which I may be selected (see forName). */
+    String name();
+
+    /** Return a template Evaluator (see create) whose name is NAME:
+     *  "territory" or "mobility". */
+    static Evaluator forName(String name) {
+        switch (name) {
+        case "territory":
+            return new TerritoryEvaluator();
+        case "mobility":
+            return new MobilityEvaluator();
+        default:
+            throw error("unknown evaluator: %s", name);
+        }
+    }
+}
@@ -110,6 +110,11 @@ class GUI extends TopLevel implements View, Reporter {
     public void reportMove(Move unused) {
     }
 
+    @Override
+    public void reportInfo(SearchStats stats) {
+        _widget.setInfo(stats.summary());
+    }
+
     /** The board widget. */
     private BoardWidget _widget;
 
@@ -41,6 +41,11 @@ class GUIPlayer extends Player implements Reporter {
     public void reportMove(Move unused) {
     }
 
+    @Override
+    public void reportInfo(SearchStats stats) {
+        _gui.reportInfo(stats);
+    }
+
     /** The GUI I use for input. */
     private GUI _gui;
 }
@@ -0,0 +1,502 @@
+package amazons;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import static java.lang.Math.*;
+import static amazons.Piece.*;
+import static amazons.Utils.error;
+
+/** A Player that chooses moves by Monte-Carlo tree search (UCT).  It
+ *  grows a tree of positions from the current one, each time descending
+ *  by the UCB1 rule to a position not yet in the tree, adding it, and
+ *  scoring it by playing the game out with random moves on a
+ *  PlayoutBoard.  Since Amazons has hundreds or thousands of moves in a
+ *  position, a node's moves are ordered by a cheap static estimate, and
+ *  only the first few are considered at first, more being admitted as
+ *  the node is visited more often (progressive widening).  The tree is
+ *  kept from one move to the next, so that the part of it below the
+ *  moves actually played is reused.  Like AI, plays separated endgames
+ *  perfectly (see Endgame).
+ *
+ *  With more than one thread, all threads grow the same tree (tree
+ *  parallelism), each with its own Board, PlayoutBoard, and random
+ *  numbers (see Worker).  Visit and win counts are updated atomically,
+ *  without locks.  A thread counts its visit to each node on the way
+ *  down, before it knows the result (a virtual loss), which makes the
+ *  node look worse to other threads until the result arrives, and so
+ *  spreads the threads over different parts of the tree.
+ *  @author Zhenkai Han
+ */
+class MCTSPlayer extends Player {
+
+    /**
+     * Weight of the exploration term of the UCB1 formula.
+     */
+    private static final double EXPLORATION = 0.4;
+
+    /**
+     * A node with V visits may have WIDENING * V**WIDENING_POWER children
+     * (and always at least one).
+     */
+    private static final double WIDENING = 2, WIDENING_POWER = 0.5;
+
+    /**
+     * Number of visits to a node after which its moves are generated and
+     * ordered.  Until then, each visit ends with a playout from the node
+     * itself, sparing the cost of generating moves for nodes that are
+     * rarely visited.
+     */
+    private static final int EXPAND_VISITS = 8;
+
+    /**
+     * Number of random moves in a playout, after which the position is
+     * judged by territory (see PlayoutBoard.territory).
+     */
+    private static final int PLAYOUT_MOVES = 6;
+
+    /**
+     * A lead in territory of this many squares at the end of a playout
+     * counts as a win with probability 1/(1+e**-1), or about 0.73.
+     */
+    private static final double TERRITORY_SCALE = 4;
+
+    /**
+     * Largest number of moves played since the last search across which
+     * the tree is kept.
+     */
+    private static final int MAX_REUSE = 2;
+
+    /**
+     * Win counts are kept in units of 1/WIN_UNIT of a win, so that they
+     * may be updated atomically as longs.
+     */
+    private static final long WIN_UNIT = 1 << 16;
+
+    /**
+     * A new MCTSPlayer with no piece or controller (intended to produce
+     * a template).
+     */
+    MCTSPlayer() {
+        this(null, null);
+    }
+
+    /**
+     * A new MCTSPlayer playing PIECE under control of CONTROLLER.
+     */
+    MCTSPlayer(Piece piece, Controller controller) {
+        super(piece, controller);
+        setThreads(1);
+    }
+
+    @Override
+    Player create(Piece piece, Controller controller) {
+        return new MCTSPlayer(piece, controller);
+    }
+
+    @Override
+    String myMove() {
+        Move move = findMove();
+        _controller.reportMove(move);
+        return move.toString();
+    }
+
+    /** Return a move for me from the current position, assuming there
+     *  is a move, searching for as long as the time budget for this move
+     *  allows or for as many playouts as my controller allows. */
+    private Move findMove() {
+        long start = System.nanoTime();
+        Board b = board();
+        if (_endgame == null) {
+            _endgame = new Endgame();
+        }
+        _endgame.setTablebase(_controller.tablebase());
+        Move best;
+        if (_endgame.solve(b)) {
+            best = Move.mv(_endgame.bestMove());
+            _nodes = _endgame.nodes();
+        } else {
+            setThreads(_controller.searchThreads());
+            setSeed(_controller.randInt(Integer.MAX_VALUE));
+            best = search(b, _controller.playouts(),
+                          start + _controller.timeBudget() * 1000000);
+            _nodes = playouts();
+        }
+        _controller.chargeTime((System.nanoTime() - start) / 1000000);
+        return best;
+    }
+
+    /** Search with N >= 1 threads.  With one thread and a limit on
+     *  playouts, a search is deterministic (see setSeed). */
+    void setThreads(int n) {
+        if (n < 1) {
+            throw error("need at least one thread");
+        }
+        if (_workers == null || _workers.length != n) {
+            Worker[] workers = new Worker[n];
+            for (int i = 0; i < n; i += 1) {
+                if (_workers != null && i < _workers.length) {
+                    workers[i] = _workers[i];
+                } else {
+                    workers[i] = new Worker();
+                }
+            }
+            _workers = workers;
+        }
+    }
+
+    /** Make the random choices of my next search depend only on SEED:
+     *  each of my threads seeds its random numbers from SEED and its
+     *  number. */
+    void setSeed(long seed) {
+        _seed = seed;
+    }
+
+    /** Search from BOARD, which must have a move, until PLAYOUTS playouts
+     *  have been done in all (if PLAYOUTS > 0) or until System.nanoTime()
+     *  passes DEADLINE, whichever comes first, and return the move
+     *  visited most often.  Keeps the part of my tree from the last
+     *  search that is still relevant.  Leaves BOARD unchanged. */
+    Move search(Board board, int playouts, long deadline) {
+        _position.copy(board);
+        reuseTree();
+        _playoutLimit = playouts;
+        _deadline = deadline;
+        _playouts.set(1);
+        for (int i = 0; i < _workers.length; i += 1) {
+            _workers[i].prepare(board, _seed + i);
+        }
+        _workers[0].expand(_root);
+        _workers[0].iterate();
+        Thread[] helpers = new Thread[_workers.length - 1];
+        for (int i = 0; i < helpers.length; i += 1) {
+            helpers[i] = new Thread(_workers[i + 1]::run);
+            helpers[i].setDaemon(true);
+            helpers[i].start();
+        }
+        _workers[0].run();
+        for (Thread helper : helpers) {
+            boolean done = false;
+            while (!done) {
+                try {
+                    helper.join();
+                    done = true;
+                } catch (InterruptedException excp) {
+                    /* Keep waiting: the helper is about to stop. */
+                }
+            }
+        }
+        Node[] children = _root.children;
+        Node best = children[0];
+        for (int i = 1; i < _root.numChildren; i += 1) {
+            if (children[i].visits > best.visits) {
+                best = children[i];
+            }
+        }
+        return Move.mv(best.move);
+    }
+
+    /** Return the number of playouts done by the last search. */
+    int playouts() {
+        return _playouts.get();
+    }
+
+    /** Return the number of positions examined in choosing my last
+     *  move: playouts, or positions searched by my endgame solver. */
+    @Override
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the number of visits so far to the root of my tree,
+     *  including those made by earlier searches whose trees were
+     *  kept. */
+    int rootVisits() {
+        return _root.visits;
+    }
+
+    /** Make _root the node for the position on _position, keeping the
+     *  subtree of my old tree for that position if it has one. */
+    private void reuseTree() {
+        Node root = null;
+        int played = _position.numMoves() - _rootPly;
+        if (_root != null && played >= 0 && played <= MAX_REUSE) {
+            Board past = new Board(_position);
+            for (int k = 0; k < played; k += 1) {
+                past.undo();
+            }
+            if (past.key() == _rootKey) {
+                root = _root;
+                for (int k = _rootPly;
+                     root != null && k < _position.numMoves(); k += 1) {
+                    root = root.child(_position.move(k));
+                }
+            }
+        }
+        _root = root != null ? root : new Node(TranspositionTable.NO_MOVE);
+        _rootPly = _position.numMoves();
+        _rootKey = _position.key();
+    }
+
+    /** Claim one more playout for the current search, returning false if
+     *  there is no time or playout left for it. */
+    private boolean claimPlayout() {
+        if (System.nanoTime() >= _deadline) {
+            return false;
+        }
+        int claimed = _playouts.incrementAndGet();
+        if (_playoutLimit > 0 && claimed > _playoutLimit) {
+            _playouts.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /** The state of one thread of the search: its copy of the position,
+     *  its board for playouts and their random numbers, its judge of
+     *  positions, and scratch space. */
+    private class Worker {
+
+        /** Set up to search from BOARD, seeding my random numbers with
+         *  SEED. */
+        void prepare(Board board, long seed) {
+            _board.copy(board);
+            _playout.setSeed(seed);
+        }
+
+        /** Do iterations until the current search runs out of time or
+         *  playouts. */
+        void run() {
+            while (claimPlayout()) {
+                iterate();
+            }
+        }
+
+        /** Do one iteration of the search: descend from the root to a
+         *  node not yet in the tree, or one that has not been visited
+         *  enough to be expanded, play out the game from there, and
+         *  record the result in each node on the way. */
+        void iterate() {
+            Node node = _root;
+            VISITS.incrementAndGet(node);
+            _path[0] = node;
+            int length = 1;
+            Piece winner = _board.winner();
+            while (winner == null && node.moves != null) {
+                node = select(node);
+                _board.makeMove(node.move);
+                _path[length] = node;
+                length += 1;
+                int visits = VISITS.getAndIncrement(node);
+                winner = _board.winner();
+                if (visits == 0) {
+                    break;
+                }
+                if (winner == null && visits >= EXPAND_VISITS) {
+                    expand(node);
+                }
+            }
+            if (winner == null) {
+                _playout.set(_board);
+                winner = _playout.playout(PLAYOUT_MOVES);
+            }
+            double whiteWins;
+            if (winner != null) {
+                whiteWins = winner == WHITE ? 1 : 0;
+            } else {
+                whiteWins =
+                    1 / (1 + exp(-_playout.territory() / TERRITORY_SCALE));
+            }
+            long whiteUnits = round(whiteWins * WIN_UNIT);
+            for (int i = length - 1; i >= 0; i -= 1) {
+                WINS.addAndGet(_path[i], _board.turn() == BLACK ? whiteUnits
+                               : WIN_UNIT - whiteUnits);
+                if (i > 0) {
+                    _board.undo();
+                }
+            }
+        }
+
+        /** Return the child of NODE, which has been expanded, through
+         *  which to descend: a new child for the next of NODE's moves if
+         *  progressive widening admits another one, and otherwise the
+         *  child with the largest UCB1 value. */
+        Node select(Node node) {
+            int allowed =
+                min(node.moves.length,
+                    max(1, (int) (WIDENING
+                                  * pow(node.visits, WIDENING_POWER))));
+            if (node.numChildren < allowed) {
+                synchronized (node) {
+                    if (node.numChildren < allowed) {
+                        return node.addChild();
+                    }
+                }
+            }
+            int n = node.numChildren;
+            Node[] children = node.children;
+            double logVisits = log(node.visits);
+            Node best = children[0];
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i += 1) {
+                Node child = children[i];
+                int visits = child.visits;
+                if (visits == 0) {
+                    continue;
+                }
+                double value = (double) child.wins / WIN_UNIT / visits
+                    + EXPLORATION * sqrt(logVisits / visits);
+                if (value > bestValue) {
+                    best = child;
+                    bestValue = value;
+                }
+            }
+            return best;
+        }
+
+        /** Generate the moves from NODE, the node for the position on my
+         *  board, unless that has been done or is being done by another
+         *  thread, and order them best first for the side to move, as
+         *  judged by my evaluator. */
+        void expand(Node node) {
+            synchronized (node) {
+                if (node.moves != null || node.expanding) {
+                    return;
+                }
+                node.expanding = true;
+            }
+            int sense = _board.turn() == WHITE ? 1 : -1;
+            int n = _board.legalMoves(_board.turn(), _moves);
+            for (int i = 0; i < n; i += 1) {
+                _board.makeMove(_moves[i]);
+                int score = sense * _evaluator.score(_board);
+                _board.undo();
+                _sortKeys[i] = ((long) -score << 32) | _moves[i];
+            }
+            Arrays.sort(_sortKeys, 0, n);
+            int[] moves = new int[n];
+            for (int i = 0; i < n; i += 1) {
+                moves[i] = (int) _sortKeys[i];
+            }
+            node.moves = moves;
+        }
+
+        /** My copy of the position being searched. */
+        private final Board _board = new Board();
+
+        /** Board for my playouts, with its own random numbers. */
+        private final PlayoutBoard _playout = new PlayoutBoard(0);
+
+        /** Judge of positions, for ordering moves. */
+        private final Evaluator _evaluator = new TerritoryEvaluator();
+
+        /** The nodes from the root to the current node of an
+         *  iteration. */
+        private final Node[] _path = new Node[Board.SIZE * Board.SIZE];
+
+        /** Scratch space for generating and ordering moves. */
+        private final int[] _moves = new int[Board.MAX_MOVES];
+        /** See _moves. */
+        private final long[] _sortKeys = new long[Board.MAX_MOVES];
+    }
+
+    /** A position in my tree.  Its statistics are updated atomically
+     *  (see VISITS and WINS); its children are added under its lock, but
+     *  may be read without it. */
+    private static class Node {
+
+        /** A node for the position reached by MOVE (packed). */
+        Node(int move) {
+            this.move = move;
+        }
+
+        /** Return my child reached by MOVE (packed), or null if there
+         *  is none. */
+        Node child(int move) {
+            for (int i = 0; i < numChildren; i += 1) {
+                if (children[i].move == move) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        /** Add a child for the next of my moves that has none, and
+         *  return it.  Must be called holding my lock. */
+        Node addChild() {
+            int n = numChildren;
+            if (children == null) {
+                children = new Node[min(moves.length, 4)];
+            } else if (n == children.length) {
+                children = Arrays.copyOf(children, min(moves.length, 2 * n));
+            }
+            Node child = new Node(moves[n]);
+            children[n] = child;
+            numChildren = n + 1;
+            return child;
+        }
+
+        /** The move (packed) leading to me from my parent. */
+        final int move;
+        /** Number of playouts through me, including those in progress. */
+        volatile int visits;
+        /** Number of those playouts won by the side that made my move,
+         *  in units of 1/WIN_UNIT. */
+        volatile long wins;
+        /** My legal moves, best first, or null if not yet generated. */
+        volatile int[] moves;
+        /** True once some thread has begun generating my moves. */
+        boolean expanding;
+        /** My children, for moves[0 .. numChildren - 1].  Replaced by a
+         *  larger copy when full, before numChildren is increased, so
+         *  that a reader that reads numChildren first sees them all. */
+        volatile Node[] children;
+        /** Number of my children. */
+        volatile int numChildren;
+    }
+
+    /** Atomic access to Node.visits. */
+    private static final AtomicIntegerFieldUpdater<Node> VISITS =
+        AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+
+    /** Atomic access to Node.wins. */
+    private static final AtomicLongFieldUpdater<Node> WINS =
+        AtomicLongFieldUpdater.newUpdater(Node.class, "wins");
+
+    /** The root of my search tree. */
+    private Node _root;
+
+    /** The number of moves made, and the key of the position, at the
+     *  root of my tree. */
+    private int _rootPly;
+    /** See _rootPly. */
+    private long _rootKey;
+
+    /** The position being searched. */
+    private final Board _position = new Board();
+
+    /** One Worker for each thread; _workers[0] runs on the caller's
+     *  thread. */
+    private Worker[] _workers;
+
+    /** Seed for the random numbers of my next search. */
+    private long _seed;
+
+    /** Most playouts in the current search, or 0 for no limit. */
+    private int _playoutLimit;
+
+    /** Value of System.nanoTime() at which the current search stops. */
+    private long _deadline;
+
+    /** Number of playouts claimed by the current or last search. */
+    private final AtomicInteger _playouts = new AtomicInteger();
+
+    /** Solver for separated endgames, or null if not yet needed. */
+    private Endgame _endgame;
+
+    /** The value of nodes(). */
+    private long _nodes;
+
+}
@@ -19,11 +19,15 @@ public class Main {
     public static void main(String... args) {
 
         CommandArgs options =
-            new CommandArgs("--display --log={0,1} --={0,2}", args);
-        if (!options.ok()) {
-            System.err.println("Usage: java amazons.Main [--display]"
-                               + " [--log=FILE] [INPUT [OUTPUT]]");
-            System.exit(1);
+            new CommandArgs("--display --log={0,1} --movetime={0,1}"
+                            + " --gametime={0,1} --threads={0,1}"
+                            + " --eval={0,1} --select={0,1} --engine={0,1}"
+                            + " --playouts={0,1} --book={0,1}"
+                            + " --tablebase={0,1} --ponder --perft={0,1}"
+                            + " --divide --={0,2}", args);
+        if (!options.ok()
+            || options.contains("--divide") && !options.contains("--perft")) {
+            usage();
         }
 
         List<String> files = options.get("--");
@@ -42,6 +46,9 @@ public class Main {
         }
 
         Controller control = getController(options);
+        if (options.contains("--perft")) {
+            perft(control, options);
+        }
         System.out.println("Amazons 61B, version 1.0");
 
         try {
@@ -54,6 +61,53 @@ public class Main {
 
     }
 
+    /** Print a usage message and exit. */
+    private static void usage() {
+        System.err.println("Usage: java amazons.Main [--display]"
+                           + " [--log=FILE] [--movetime=SECONDS]"
+                           + " [--gametime=SECONDS] [--threads=N]"
+                           + " [--eval=territory|mobility]"
+                           + " [--select=off|default|K,R,W,S]"
+                           + " [--engine=ab|mcts] [--playouts=N]"
+                           + " [--book=FILE] [--tablebase=FILE] [--ponder]"
+                           + " [--perft=DEPTH [--divide]]"
+                           + " [INPUT [OUTPUT]]");
+        System.exit(1);
+    }
+
+    /** Report, on CONTROL, the result of perft (see Controller.perft)
+     *  from the initial position to the depth given in OPTIONS, and
+     *  exit. */
+    private static void perft(Controller control, CommandArgs options) {
+        int depth = -1;
+        try {
+            depth = Integer.parseInt(options.getFirst("--perft"));
+        } catch (NumberFormatException excp) {
+            usage();
+        }
+        if (depth < 0 || depth == 0 && options.contains("--divide")) {
+            usage();
+        }
+        control.perft(depth, options.contains("--divide"));
+        System.exit(0);
+    }
+
+    /** Return the number of milliseconds given as the value of OPTION,
+     *  in seconds, in OPTIONS, or DEFLT if OPTION is absent. */
+    private static long millis(CommandArgs options, String option,
+                               long deflt) {
+        if (!options.contains(option)) {
+            return deflt;
+        }
+        try {
+            return Math.round(Double.parseDouble(options.getFirst(option))
+                              * 1000);
+        } catch (NumberFormatException excp) {
+            usage();
+            return deflt;
+        }
+    }
+
     /** Return an appropriate Controller as indicated by OPTIONS. */
     private static Controller getController(CommandArgs options) {
         Player manualPlayer;
@@ -83,6 +137,73 @@ public class Main {
             }
         }
 
-        return new Controller(view, log, reporter, manualPlayer, new AI());
+        Player autoPlayer = new AI();
+        if (options.contains("--engine")) {
+            try {
+                autoPlayer = Player.forName(options.getFirst("--engine"));
+            } catch (IllegalArgumentException excp) {
+                usage();
+            }
+        }
+
+        Controller control =
+            new Controller(view, log, reporter, manualPlayer, autoPlayer);
+        control.setTimeLimits(millis(options, "--movetime",
+                                     Controller.DEFAULT_MOVE_TIME),
+                              millis(options, "--gametime",
+                                     Controller.DEFAULT_GAME_TIME));
+        if (options.contains("--threads")) {
+            try {
+                control.setSearchThreads(
+                    Integer.parseInt(options.getFirst("--threads")));
+            } catch (IllegalArgumentException excp) {
+                usage();
+            }
+        }
+        if (options.contains("--eval")) {
+            try {
+                control.setEvaluator(
+                    Evaluator.forName(options.getFirst("--eval")));
+            } catch (IllegalArgumentException excp) {
+                usage();
+            }
+        }
+        if (options.contains("--playouts")) {
+            try {
+                control.setPlayouts(
+                    Integer.parseInt(options.getFirst("--playouts")));
+            } catch (IllegalArgumentException excp) {
+                usage();
+            }
+        }
+        if (options.contains("--book")) {
+            try {
+                control.setBook(OpeningBook.open(options.getFirst("--book")));
+            } catch (IOException | IllegalArgumentException excp) {
+                System.err.printf("Could not open opening book: %s%n",
+                                  excp.getMessage());
+                System.exit(1);
+            }
+        }
+        if (options.contains("--tablebase")) {
+            try {
+                control.setTablebase(
+                    Tablebase.open(options.getFirst("--tablebase")));
+            } catch (IOException | IllegalArgumentException excp) {
+                System.err.printf("Could not open tablebase: %s%n",
+                                  excp.getMessage());
+                System.exit(1);
+            }
+        }
+        control.setPondering(options.contains("--ponder"));
+        if (options.contains("--select")) {
+            try {
+                control.setSelectivity(
+                    Selectivity.parse(options.getFirst("--select")));
+            } catch (IllegalArgumentException excp) {
+                usage();
+            }
+        }
+        return control;
     }
 }
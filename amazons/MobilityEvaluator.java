@@ -0,0 +1,45 @@
+package amazons;
+
+import static amazons.Piece.*;
+
+/** The original evaluator of the AI: the fewer empty squares (up to five
+ *  steps away along each line) that the opponent's queens can see, the
+ *  better.  It pays no attention to the player's own queens.  The count
+ *  is kept by the board (see ReachCounts.nearby).
+ *  @author Zhenkai Han
+ */
+class MobilityEvaluator implements Evaluator {
+
+    /** A template MobilityEvaluator (see Evaluator.create). */
+    MobilityEvaluator() {
+        this(null);
+    }
+
+    /** A MobilityEvaluator judging positions for SIDE. */
+    MobilityEvaluator(Piece side) {
+        _side = side;
+    }
+
+    @Override
+    public Evaluator create(Piece side) {
+        return new MobilityEvaluator(side);
+    }
+
+    @Override
+    public int score(Board board) {
+        int myScore = board.counts().nearby(_side.opponent());
+        if (_side == WHITE) {
+            return -myScore;
+        } else {
+            return myScore;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "mobility";
+    }
+
+    /** The side for which I judge positions. */
+    private final Piece _side;
+}
@@ -46,16 +46,57 @@ final class Move {
         return MOVES[from.index()][to.index()][spear.index()];
     }
 
+    /** Return my packed representation (see pack). */
+    int packed() {
+        return _packed;
+    }
+
+    /** Return the packed representation of FROM-TO(SPEAR): an int holding
+     *  the index of FROM in bits 0-6, that of TO in bits 7-13, and that of
+     *  SPEAR in bits 14-20.  Search code passes moves around in this form
+     *  to avoid handling Move objects. */
+    static int pack(Square from, Square to, Square spear) {
+        return pack(from.index(), to.index(), spear.index());
+    }
+
+    /** Return the packed representation of the move from the square with
+     *  index FROM to that with index TO, throwing a spear to the square
+     *  with index SPEAR. */
+    static int pack(int from, int to, int spear) {
+        return from | (to << PACK_BITS) | (spear << (2 * PACK_BITS));
+    }
+
+    /** Return the index of the square moved from in packed move PACKED. */
+    static int fromIndex(int packed) {
+        return packed & PACK_MASK;
+    }
+
+    /** Return the index of the square moved to in packed move PACKED. */
+    static int toIndex(int packed) {
+        return (packed >>> PACK_BITS) & PACK_MASK;
+    }
+
+    /** Return the index of the spear's square in packed move PACKED. */
+    static int spearIndex(int packed) {
+        return (packed >>> (2 * PACK_BITS)) & PACK_MASK;
+    }
+
+    /** Return the unique Move whose packed representation is PACKED. */
+    static Move mv(int packed) {
+        return mv(Square.sq(fromIndex(packed)), Square.sq(toIndex(packed)),
+                  Square.sq(spearIndex(packed)));
+    }
+
     /** Return the Move denoted by STR, if STR denotes a move with
      *  valid syntax in which the piece move and spear throw are proper
      *  queen moves, and null otherwise. */
     static Move mv(String str) {
-        _moveMatcher.reset(str);
-        if (_moveMatcher.matches()) {
-            int k = _moveMatcher.group(1) != null ? 1 : 4;
-            Square from = sq(_moveMatcher.group(k)),
-                to = sq(_moveMatcher.group(k + 1)),
-                spear = sq(_moveMatcher.group(k + 2));
+        Matcher mat = MOVE_PATTERN.matcher(str);
+        if (mat.matches()) {
+            int k = mat.group(1) != null ? 1 : 4;
+            Square from = sq(mat.group(k)),
+                to = sq(mat.group(k + 1)),
+                spear = sq(mat.group(k + 2));
             if (from.isQueenMove(to) && to.isQueenMove(spear)) {
                 return mv(from, to, spear);
             }
@@ -66,8 +107,7 @@ final class Move {
     /** Return true iff STR has the right format for a Move, ignoring whether
      *  its piece-move and spear-throw are valid queen moves. */
     static boolean isGrammaticalMove(String str) {
-        _moveMatcher.reset(str);
-        return _moveMatcher.matches();
+        return MOVE_PATTERN.matcher(str).matches();
     }
 
     @Override
@@ -78,17 +118,23 @@ final class Move {
     /** Construct the Move FROM-TO(SPEAR). */
     private Move(Square from, Square to, Square spear) {
         _from = from; _to = to; _spear = spear;
+        _packed = pack(from, to, spear);
         _str = String.format("%s-%s(%s)", from, to, spear);
     }
 
+    /** Number of bits used for each square index in a packed move. */
+    static final int PACK_BITS = 7;
+    /** Mask extracting one square index from a shifted packed move. */
+    private static final int PACK_MASK = (1 << PACK_BITS) - 1;
+
     /** The cache of all Moves created. */
     private static final Move[][][] MOVES = new Move[100][100][100];
 
     /** The components of a Move. */
     private final Square _from, _to, _spear;
+    /** My packed representation. */
+    private final int _packed;
     /** The printed form of a Move. */
     private String _str;
-    /**  A utility Matcher for moves, using MOVE_PATTERN. */
-    private static Matcher _moveMatcher = MOVE_PATTERN.matcher("");
 }
 
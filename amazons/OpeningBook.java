@@ -0,0 +1,222 @@
+package amazons;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static amazons.Utils.error;
+
+/** A book of opening moves, read from a file prepared in advance (see
+ *  BookBuilder).  The file is a header followed by fixed-size records,
+ *  one per position, sorted by the position's Zobrist key (see
+ *  Board.key), each holding the key, the best move found for the side
+ *  to move (packed, as for Move.pack), its value to that side, and the
+ *  number of times the position was reached while building the book.
+ *  The file is memory-mapped and searched in place by binary search, so
+ *  that opening a book reads nothing but its header, however large it
+ *  is.  An OpeningBook is immutable, and may be shared by threads.
+ *  @author Zhenkai Han
+ */
+final class OpeningBook {
+
+    /** The first four bytes of a book file: "AMZB". */
+    static final int MAGIC = 0x414D5A42;
+
+    /** The version of the file format described here. */
+    static final int VERSION = 1;
+
+    /** Number of bytes in the header: MAGIC, VERSION, the number of
+     *  records, and a reserved word, as big-endian ints. */
+    static final int HEADER_BYTES = 16;
+
+    /** Number of bytes in each record: the key (long), the move (int),
+     *  the value (short), and the count (unsigned short). */
+    static final int RECORD_BYTES = 16;
+
+    /** Value of find() for a key that is not in the book. */
+    static final int MISSING = -1;
+
+    /** The book in the file named FILENAME.  Throws IOException if the
+     *  file cannot be read, and IllegalArgumentException if it is not a
+     *  book. */
+    static OpeningBook open(String fileName) throws IOException {
+        MappedByteBuffer records;
+        try (FileChannel channel =
+             FileChannel.open(Paths.get(fileName), READ)) {
+            records = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                  channel.size());
+        }
+        return new OpeningBook(records, fileName);
+    }
+
+    /** A book whose file, named FILENAME, is mapped to RECORDS. */
+    private OpeningBook(MappedByteBuffer records, String fileName) {
+        if (records.capacity() < HEADER_BYTES
+            || records.getInt(0) != MAGIC
+            || records.getInt(4) != VERSION) {
+            throw error("not an opening book: %s", fileName);
+        }
+        _size = records.getInt(8);
+        if (_size < 0
+            || records.capacity() != HEADER_BYTES
+                                     + (long) _size * RECORD_BYTES) {
+            throw error("damaged opening book: %s", fileName);
+        }
+        _records = records;
+    }
+
+    /** Return the number of positions in the book. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the number of the record for the position whose key is
+     *  KEY, or MISSING if there is none. */
+    int find(long key) {
+        int lo = 0, hi = _size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long midKey = key(mid);
+            if (midKey < key) {
+                lo = mid + 1;
+            } else if (midKey > key) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return MISSING;
+    }
+
+    /** Return the book move for the position on BOARD, or null if the
+     *  book has none, or if the move it has is not legal there (as may
+     *  happen, rarely, when two positions share a key). */
+    Move lookup(Board board) {
+        int k = find(board.key());
+        if (k == MISSING) {
+            return null;
+        }
+        Move move = Move.mv(move(k));
+        return move != null && board.isLegal(move) ? move : null;
+    }
+
+    /** Return the key of record K. */
+    long key(int k) {
+        return _records.getLong(offset(k));
+    }
+
+    /** Return the move (packed) of record K. */
+    int move(int k) {
+        return _records.getInt(offset(k) + 8);
+    }
+
+    /** Return the value of record K to the side to move, as found by
+     *  the search that chose its move (limited to the range of a
+     *  short). */
+    int value(int k) {
+        return _records.getShort(offset(k) + 12);
+    }
+
+    /** Return the number of times the position of record K was reached
+     *  while building the book (at most 65535). */
+    int count(int k) {
+        return _records.getChar(offset(k) + 14);
+    }
+
+    /** Return the offset in my file of record K. */
+    private int offset(int k) {
+        return HEADER_BYTES + k * RECORD_BYTES;
+    }
+
+    /** Collects the records of a book and writes them to a file. */
+    static final class Builder {
+
+        /** Record that MOVE (packed) is the best move, with value VALUE
+         *  to the side to move, in the position whose key is KEY, which
+         *  must not have been recorded yet. */
+        void add(long key, int move, int value) {
+            if (_size == _keys.length) {
+                _keys = Arrays.copyOf(_keys, 2 * _size);
+                _moves = Arrays.copyOf(_moves, 2 * _size);
+                _values = Arrays.copyOf(_values, 2 * _size);
+                _counts = Arrays.copyOf(_counts, 2 * _size);
+            }
+            _index.put(key, _size);
+            _keys[_size] = key;
+            _moves[_size] = move;
+            _values[_size] =
+                Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+            _counts[_size] = 1;
+            _size += 1;
+        }
+
+        /** If the position whose key is KEY has been recorded, count
+         *  another visit to it and return true; otherwise return
+         *  false. */
+        boolean visit(long key) {
+            Integer k = _index.get(key);
+            if (k == null) {
+                return false;
+            }
+            _counts[k] = Math.min(_counts[k] + 1, Character.MAX_VALUE);
+            return true;
+        }
+
+        /** Return the number of positions recorded. */
+        int size() {
+            return _size;
+        }
+
+        /** Write the records collected so far, as a book, to the file
+         *  named FILENAME. */
+        void write(String fileName) throws IOException {
+            Integer[] sorted = new Integer[_size];
+            for (int i = 0; i < _size; i += 1) {
+                sorted[i] = i;
+            }
+            Arrays.sort(sorted, (a, b) -> Long.compare(_keys[a], _keys[b]));
+            try (DataOutputStream out =
+                 new DataOutputStream(new BufferedOutputStream(
+                     new FileOutputStream(fileName)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(_size);
+                out.writeInt(0);
+                for (int i : sorted) {
+                    out.writeLong(_keys[i]);
+                    out.writeInt(_moves[i]);
+                    out.writeShort(_values[i]);
+                    out.writeChar(_counts[i]);
+                }
+            }
+        }
+
+        /** Maps the keys of the positions recorded to their record
+         *  numbers. */
+        private final HashMap<Long, Integer> _index = new HashMap<>();
+
+        /** The records, in the order added: keys, moves, values, and
+         *  counts. */
+        private long[] _keys = new long[16];
+        /** See _keys. */
+        private int[] _moves = new int[16], _values = new int[16],
+            _counts = new int[16];
+
+        /** Number of records. */
+        private int _size;
+    }
+
+    /** The contents of my file. */
+    private final MappedByteBuffer _records;
+
+    /** Number of records in my file. */
+    private final int _size;
+
+}
@@ -0,0 +1,102 @@
+package amazons;
+
+import static amazons.Utils.error;
+
+/** A check of move generation, after the "perft" test of chess
+ *  programs: counts the positions reached from a given position by
+ *  every sequence of exactly a given number of legal moves.  Since the
+ *  counts grow very fast, they are sensitive to any mistake in
+ *  Board.legalMoves, makeMove, or undo, and the time taken to find them
+ *  measures the speed of those operations.  Sequences that end the game
+ *  early contribute nothing.  Moves at the last ply are counted, not
+ *  made.
+ *  @author Zhenkai Han
+ */
+class Perft {
+
+    /** A Perft that counts the positions reached from the current
+     *  position of BOARD, which it copies. */
+    Perft(Board board) {
+        _board = new Board(board);
+    }
+
+    /** Return the number of positions reached by DEPTH >= 0 moves. */
+    long count(int depth) {
+        start(depth);
+        long nodes = count(0, depth);
+        _nanos = System.nanoTime() - _nanos;
+        return nodes;
+    }
+
+    /** Store the legal moves in my position in MOVES, and the number of
+     *  positions reached by DEPTH >= 1 moves starting with MOVES[i] in
+     *  COUNTS[i], and return the number of legal moves.  MOVES and
+     *  COUNTS must have room for Board.MAX_MOVES moves. */
+    int divide(int depth, int[] moves, long[] counts) {
+        if (depth < 1) {
+            throw error("cannot divide at depth %d", depth);
+        }
+        start(depth);
+        int n = _board.legalMoves(_board.turn(), moves);
+        for (int i = 0; i < n; i += 1) {
+            _board.makeMove(moves[i]);
+            counts[i] = count(1, depth);
+            _board.undo();
+        }
+        _nanos = System.nanoTime() - _nanos;
+        return n;
+    }
+
+    /** Return the time taken by the last call to count or divide, in
+     *  nanoseconds. */
+    long nanos() {
+        return _nanos;
+    }
+
+    /** Prepare to count to DEPTH, starting the clock. */
+    private void start(int depth) {
+        if (depth < 0) {
+            throw error("negative depth");
+        }
+        if (_moves.length < depth) {
+            _moves = new int[depth][];
+        }
+        for (int ply = 0; ply < depth; ply += 1) {
+            if (_moves[ply] == null) {
+                _moves[ply] = new int[Board.MAX_MOVES];
+            }
+        }
+        _nanos = System.nanoTime();
+    }
+
+    /** Return the number of positions reached by DEPTH - PLY moves from
+     *  my board, which is PLY moves from the starting position. */
+    private long count(int ply, int depth) {
+        if (ply == depth) {
+            return 1;
+        }
+        int[] moves = _moves[ply];
+        int n = _board.legalMoves(_board.turn(), moves);
+        if (ply == depth - 1) {
+            return n;
+        }
+        long nodes = 0;
+        for (int i = 0; i < n; i += 1) {
+            _board.makeMove(moves[i]);
+            nodes += count(ply + 1, depth);
+            _board.undo();
+        }
+        return nodes;
+    }
+
+    /** The position counted from, which is restored after each count. */
+    private final Board _board;
+
+    /** Move buffers for each ply. */
+    private int[][] _moves = new int[0][];
+
+    /** Time taken by the last count, or its start time while
+     *  counting. */
+    private long _nanos;
+
+}
@@ -14,6 +14,20 @@ abstract class Player {
         _myPiece = piece;
     }
 
+    /** Return a template (see create) for automated players of the kind
+     *  named NAME: "ab" for alpha-beta search (AI) or "mcts" for
+     *  Monte-Carlo tree search (MCTSPlayer). */
+    static Player forName(String name) {
+        switch (name) {
+        case "ab":
+            return new AI();
+        case "mcts":
+            return new MCTSPlayer();
+        default:
+            throw error("unknown player: %s", name);
+        }
+    }
+
     /** Return my piece's color. */
     Piece myPiece() {
         return _myPiece;
@@ -36,6 +50,20 @@ abstract class Player {
      *  is not null. */
     abstract String myMove();
 
+    /** Stop any work I am doing in the background, such as searching
+     *  the position I expect next, because the game has been changed
+     *  (by "undo" or "new", say) or I am being replaced.  By default,
+     *  does nothing. */
+    void cancel() {
+    }
+
+    /** Return the number of positions I examined in choosing my last
+     *  move (nodes searched, or games played out), for measuring my
+     *  speed.  By default, 0. */
+    long nodes() {
+        return 0;
+    }
+
     /** My Controller. */
     protected Controller _controller;
     /** The Piece I play (WHITE or BLACK). */
@@ -0,0 +1,279 @@
+package amazons;
+
+import static amazons.Piece.*;
+
+/** A stripped-down board for playing out games with random moves, as
+ *  Monte-Carlo tree search does many thousands of times a move.  It
+ *  holds only the contents of the squares and where the queens are, in
+ *  primitive arrays, and keeps no history, so that moves cannot be
+ *  undone; to play out another game, set it again from a Board.  Once
+ *  set, it allocates nothing.  Squares are identified by their indices
+ *  (see Square.index), and moves are packed as for Move.pack.
+ *  @author Zhenkai Han
+ */
+final class PlayoutBoard {
+
+    /** Value of randomMove() when the side to move has no move. */
+    static final int NO_MOVE = -1;
+
+    /** A board, initially empty, whose random choices are determined by
+     *  SEED. */
+    PlayoutBoard(long seed) {
+        setSeed(seed);
+    }
+
+    /** Make the sequence of random choices I make from now on depend
+     *  only on SEED. */
+    void setSeed(long seed) {
+        _random = seed * 0x9E3779B97F4A7C15L | 1;
+    }
+
+    /** Copy the position on BOARD into me.  BOARD must have exactly
+     *  QUEENS queens of each color, as every position reached by play
+     *  does. */
+    void set(Board board) {
+        for (int i = 0; i < SQUARES; i += 1) {
+            _contents[i] = EMPTY_CODE;
+        }
+        int n = 0;
+        for (Piece p : SIDES) {
+            long lo = board.maskLo(p), hi = board.maskHi(p);
+            while (lo != 0 || hi != 0) {
+                int index = SquareMask.first(lo, hi);
+                lo &= ~SquareMask.lo(index);
+                hi &= ~SquareMask.hi(index);
+                _contents[index] = (byte) p.ordinal();
+                if (p != SPEAR) {
+                    assert n < (p == WHITE ? QUEENS : 2 * QUEENS);
+                    _queens[n] = index;
+                    n += 1;
+                }
+            }
+            assert p == SPEAR || n == (p == WHITE ? QUEENS : 2 * QUEENS);
+        }
+        _turn = board.turn();
+    }
+
+    /** Return the side to move. */
+    Piece turn() {
+        return _turn;
+    }
+
+    /** Return the contents of the square with index INDEX. */
+    Piece get(int index) {
+        return PIECES[_contents[index]];
+    }
+
+    /** Return a legal move for the side to move, chosen at random, or
+     *  NO_MOVE if that side has none.  The queen to move is chosen first,
+     *  among those that can move, then its destination, then the square
+     *  to throw to, each uniformly. */
+    int randomMove() {
+        int base = _turn == WHITE ? 0 : QUEENS;
+        int first = nextInt(QUEENS);
+        for (int k = 0; k < QUEENS; k += 1) {
+            int from = _queens[base + (first + k) % QUEENS];
+            int n = reach(from);
+            if (n > 0) {
+                int to = _reach[nextInt(n)];
+                byte mover = _contents[from];
+                _contents[from] = EMPTY_CODE;
+                int spear = _reach[nextInt(reach(to))];
+                _contents[from] = mover;
+                return Move.pack(from, to, spear);
+            }
+        }
+        return NO_MOVE;
+    }
+
+    /** Make MOVE, a legal move (packed) for the side to move. */
+    void makeMove(int move) {
+        int from = Move.fromIndex(move), to = Move.toIndex(move);
+        int base = _turn == WHITE ? 0 : QUEENS;
+        for (int q = base; q < base + QUEENS; q += 1) {
+            if (_queens[q] == from) {
+                _queens[q] = to;
+                break;
+            }
+        }
+        _contents[to] = _contents[from];
+        _contents[from] = EMPTY_CODE;
+        _contents[Move.spearIndex(move)] = SPEAR_CODE;
+        _turn = _turn.opponent();
+    }
+
+    /** Play random moves until one side cannot move, and return the
+     *  winner.  Afterwards, I hold the final position. */
+    Piece playout() {
+        return playout(Integer.MAX_VALUE);
+    }
+
+    /** Play at most LIMIT random moves, stopping early if one side
+     *  cannot move, and return the winner, or null if the game has not
+     *  ended.  Afterwards, I hold the position reached. */
+    Piece playout(int limit) {
+        for (int k = 0; k < limit; k += 1) {
+            int move = randomMove();
+            if (move == NO_MOVE) {
+                return _turn.opponent();
+            }
+            makeMove(move);
+        }
+        return null;
+    }
+
+    /** Return the number of empty squares White would own less the
+     *  number Black would, if each went to the side whose queens could
+     *  reach it in fewer queen moves, with squares both sides could reach
+     *  equally soon going to the side to move. */
+    int territory() {
+        distances(0, _whiteDist);
+        distances(QUEENS, _blackDist);
+        boolean whiteToMove = _turn == WHITE;
+        int balance = 0;
+        for (int i = 0; i < SQUARES; i += 1) {
+            int w = _whiteDist[i], b = _blackDist[i];
+            if (w < b || (w == b && w != UNREACHED && whiteToMove)) {
+                balance += 1;
+            } else if (b < w || (w == b && b != UNREACHED)) {
+                balance -= 1;
+            }
+        }
+        return balance;
+    }
+
+    /** Fill DIST with the number of queen moves in which the queens
+     *  _queens[BASE .. BASE + 3] could reach each empty square, or
+     *  UNREACHED if they cannot, by breadth-first search. */
+    private void distances(int base, byte[] dist) {
+        for (int i = 0; i < SQUARES; i += 1) {
+            dist[i] = UNREACHED;
+        }
+        int head = 0, tail = 0;
+        for (int q = base; q < base + QUEENS; q += 1) {
+            _queue[tail] = _queens[q];
+            tail += 1;
+            dist[_queens[q]] = 0;
+        }
+        while (head < tail) {
+            int from = _queue[head];
+            head += 1;
+            byte next = (byte) (dist[from] + 1);
+            for (int d = 0; d < 8; d += 1) {
+                int ray = 8 * from + d;
+                for (int k = RAY_START[ray]; k < RAY_START[ray + 1];
+                     k += 1) {
+                    int to = RAYS[k];
+                    if (_contents[to] != EMPTY_CODE || dist[to] < next) {
+                        break;
+                    }
+                    if (dist[to] == UNREACHED) {
+                        dist[to] = next;
+                        _queue[tail] = to;
+                        tail += 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Fill _reach with the indices of the empty squares reachable by a
+     *  queen at square FROM, and return their number. */
+    private int reach(int from) {
+        int n = 0;
+        for (int d = 0; d < 8; d += 1) {
+            int ray = 8 * from + d;
+            for (int k = RAY_START[ray]; k < RAY_START[ray + 1]; k += 1) {
+                int to = RAYS[k];
+                if (_contents[to] != EMPTY_CODE) {
+                    break;
+                }
+                _reach[n] = to;
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /** Return a pseudo-random integer uniformly distributed in
+     *  0 .. N-1 (N > 0), by xorshift. */
+    private int nextInt(int n) {
+        _random ^= _random << 13;
+        _random ^= _random >>> 7;
+        _random ^= _random << 17;
+        return (int) (((_random >>> 33) * n) >>> 31);
+    }
+
+    /** Number of squares on a board. */
+    private static final int SQUARES = Board.SIZE * Board.SIZE;
+
+    /** Distance of a square that cannot be reached. */
+    private static final byte UNREACHED = Byte.MAX_VALUE;
+
+    /** Number of queens per side. */
+    private static final int QUEENS = 4;
+
+    /** The Pieces, indexed by ordinal. */
+    private static final Piece[] PIECES = Piece.values();
+
+    /** The Pieces whose positions set copies. */
+    private static final Piece[] SIDES = { WHITE, BLACK, SPEAR };
+
+    /** Codes for the contents of squares: the Pieces' ordinals. */
+    private static final byte EMPTY_CODE = (byte) EMPTY.ordinal(),
+        SPEAR_CODE = (byte) SPEAR.ordinal();
+
+    /** The indices of the squares on the ray from square s in direction
+     *  d, nearest first, are RAYS[RAY_START[8 * s + d] ..
+     *  RAY_START[8 * s + d + 1] - 1]. */
+    private static final int[] RAY_START = new int[8 * SQUARES + 1];
+
+    /** See RAY_START. */
+    private static final byte[] RAYS;
+
+    static {
+        int total = 0;
+        for (Square s : Square.SQUARES) {
+            for (int d = 0; d < 8; d += 1) {
+                total += s.ray(d).length;
+            }
+        }
+        RAYS = new byte[total];
+        int k = 0;
+        for (Square s : Square.SQUARES) {
+            for (int d = 0; d < 8; d += 1) {
+                RAY_START[8 * s.index() + d] = k;
+                for (Square to : s.ray(d)) {
+                    RAYS[k] = (byte) to.index();
+                    k += 1;
+                }
+            }
+        }
+        RAY_START[8 * SQUARES] = k;
+    }
+
+    /** The contents of each square, as Piece ordinals. */
+    private final byte[] _contents = new byte[SQUARES];
+
+    /** The squares of the queens: the white ones in _queens[0 .. 3],
+     *  and the black ones in _queens[4 .. 7]. */
+    private final int[] _queens = new int[2 * QUEENS];
+
+    /** Queen-move distances from the white and black queens, filled in
+     *  by territory(). */
+    private final byte[] _whiteDist = new byte[SQUARES],
+        _blackDist = new byte[SQUARES];
+
+    /** Scratch space for distances: the breadth-first search queue. */
+    private final int[] _queue = new int[SQUARES];
+
+    /** Scratch space for reach. */
+    private final int[] _reach = new int[Board.MAX_REACH + 1];
+
+    /** The side to move. */
+    private Piece _turn;
+
+    /** State of my pseudo-random number generator. */
+    private long _random;
+
+}
@@ -0,0 +1,279 @@
+package amazons;
+
+import java.util.Arrays;
+
+import static java.lang.Math.*;
+import static amazons.Piece.*;
+import static amazons.SquareMask.*;
+
+/** Counts of how far the queens on a board could move, kept up to date
+ *  one square at a time as the contents of the board change, so that
+ *  evaluators need not walk rays at every leaf.  For each queen and
+ *  direction, the ray reach is the number of empty squares that follow
+ *  the queen in that direction before the first occupied square or the
+ *  edge of the board; a queen's reach is the sum of its ray reaches (its
+ *  number of queen moves).  For each side there are also running totals
+ *  over its queens.  Changing the contents of a square alters only the
+ *  rays of the queens on the lines through it, and only those rays are
+ *  touched.
+ *  @author Zhenkai Han
+ */
+final class ReachCounts {
+
+    /** The largest ray reach counted in full by nearby. */
+    static final int NEAR = 5;
+
+    /** Number of squares on the board. */
+    private static final int SQUARES = Board.SIZE * Board.SIZE;
+
+    /** Counts for an empty board. */
+    ReachCounts() {
+        clear();
+    }
+
+    /** Counts for the contents of BOARD, computed from scratch. */
+    ReachCounts(Board board) {
+        clear();
+        for (int s = 0; s < SQUARES; s += 1) {
+            _contents[s] = (byte) board.get(Square.sq(s)).ordinal();
+        }
+        for (int s = 0; s < SQUARES; s += 1) {
+            if (isQueen(_contents[s])) {
+                _queensLo |= SquareMask.lo(s);
+                _queensHi |= SquareMask.hi(s);
+                for (int d = 0; d < 8; d += 1) {
+                    _rays[8 * s + d] = (byte) walk(s, d);
+                    _reach[s] += _rays[8 * s + d];
+                    _near[s] += min(_rays[8 * s + d], NEAR);
+                }
+                addQueen(s);
+            }
+        }
+    }
+
+    /** Make me a copy of MODEL. */
+    void copy(ReachCounts model) {
+        System.arraycopy(model._contents, 0, _contents, 0, SQUARES);
+        System.arraycopy(model._rays, 0, _rays, 0, 8 * SQUARES);
+        System.arraycopy(model._reach, 0, _reach, 0, SQUARES);
+        System.arraycopy(model._near, 0, _near, 0, SQUARES);
+        System.arraycopy(model._mobility, 0, _mobility, 0, _mobility.length);
+        System.arraycopy(model._nearby, 0, _nearby, 0, _nearby.length);
+        _queensLo = model._queensLo;
+        _queensHi = model._queensHi;
+    }
+
+    /** Reset to the counts for an empty board. */
+    void clear() {
+        Arrays.fill(_contents, EMPTY_CODE);
+        Arrays.fill(_rays, (byte) 0);
+        Arrays.fill(_reach, (byte) 0);
+        Arrays.fill(_near, (byte) 0);
+        Arrays.fill(_mobility, 0);
+        Arrays.fill(_nearby, 0);
+        _queensLo = _queensHi = 0;
+    }
+
+    /** Record that the square with index INDEX now contains P. */
+    void set(int index, Piece p) {
+        byte old = _contents[index];
+        if (isQueen(old)) {
+            removeQueen(index);
+        }
+        _contents[index] = (byte) p.ordinal();
+        if ((old == EMPTY_CODE) != (p == EMPTY)) {
+            long lo = _queensLo & LINES_LO[index],
+                hi = _queensHi & LINES_HI[index];
+            for (int q = first(lo, hi); q >= 0; q = first(lo, hi)) {
+                lo &= ~SquareMask.lo(q);
+                hi &= ~SquareMask.hi(q);
+                int d = DIRECTION[SQUARES * q + index],
+                    dist = DISTANCE[SQUARES * q + index],
+                    ray = _rays[8 * q + d];
+                if (p != EMPTY && dist <= ray) {
+                    setRay(q, d, dist - 1);
+                } else if (p == EMPTY && dist == ray + 1) {
+                    setRay(q, d, dist + walk(index, d));
+                }
+            }
+        }
+        if (isQueen(_contents[index])) {
+            _queensLo |= SquareMask.lo(index);
+            _queensHi |= SquareMask.hi(index);
+            int reach, near;
+            reach = near = 0;
+            for (int d = 0; d < 8; d += 1) {
+                int ray = walk(index, d);
+                _rays[8 * index + d] = (byte) ray;
+                reach += ray;
+                near += min(ray, NEAR);
+            }
+            _reach[index] = (byte) reach;
+            _near[index] = (byte) near;
+            addQueen(index);
+        }
+    }
+
+    /** Return the number of empty squares following the square with
+     *  index INDEX, which must hold a queen, in direction DIR (as for
+     *  Square.queenMove). */
+    int rayReach(int index, int dir) {
+        return _rays[8 * index + dir];
+    }
+
+    /** Return the number of queen moves of the queen on the square with
+     *  index INDEX. */
+    int reach(int index) {
+        return _reach[index];
+    }
+
+    /** Return the total number of queen moves (not counting spear
+     *  throws) of SIDE's queens. */
+    int mobility(Piece side) {
+        return _mobility[side.ordinal()];
+    }
+
+    /** Return the total over SIDE's queens and directions of the number
+     *  of empty squares within NEAR steps along that direction before
+     *  the first obstacle. */
+    int nearby(Piece side) {
+        return _nearby[side.ordinal()];
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ReachCounts)) {
+            return false;
+        }
+        ReachCounts other = (ReachCounts) obj;
+        if (!Arrays.equals(_contents, other._contents)
+            || !Arrays.equals(_mobility, other._mobility)
+            || !Arrays.equals(_nearby, other._nearby)
+            || _queensLo != other._queensLo || _queensHi != other._queensHi) {
+            return false;
+        }
+        for (int s = 0; s < SQUARES; s += 1) {
+            for (int d = 0; d < 8 && isQueen(_contents[s]); d += 1) {
+                if (rayReach(s, d) != other.rayReach(s, d)
+                    || _reach[s] != other._reach[s]
+                    || _near[s] != other._near[s]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(_contents);
+    }
+
+    /** Return the number of empty squares following the square with
+     *  index INDEX in direction DIR. */
+    private int walk(int index, int dir) {
+        int n, len = LENGTH[8 * index + dir], step = STEP[dir];
+        for (n = 0; n < len; n += 1) {
+            if (_contents[index + (n + 1) * step] != EMPTY_CODE) {
+                break;
+            }
+        }
+        return n;
+    }
+
+    /** Set the ray reach of the queen on the square with index QUEEN in
+     *  direction DIR to RAY, adjusting its side's totals. */
+    private void setRay(int queen, int dir, int ray) {
+        int old = _rays[8 * queen + dir];
+        byte side = _contents[queen];
+        int near = min(ray, NEAR) - min(old, NEAR);
+        _rays[8 * queen + dir] = (byte) ray;
+        _reach[queen] += ray - old;
+        _near[queen] += near;
+        _mobility[side] += ray - old;
+        _nearby[side] += near;
+    }
+
+    /** Add the reach of the queen on the square with index INDEX, and
+     *  its nearby squares, to its side's totals. */
+    private void addQueen(int index) {
+        byte side = _contents[index];
+        _mobility[side] += _reach[index];
+        _nearby[side] += _near[index];
+    }
+
+    /** Remove the queen on the square with index INDEX from its side's
+     *  totals and from my queens. */
+    private void removeQueen(int index) {
+        byte side = _contents[index];
+        _mobility[side] -= _reach[index];
+        _nearby[side] -= _near[index];
+        _queensLo &= ~SquareMask.lo(index);
+        _queensHi &= ~SquareMask.hi(index);
+    }
+
+    /** Return true iff CODE is the code of a queen. */
+    private static boolean isQueen(byte code) {
+        return code == WHITE_CODE || code == BLACK_CODE;
+    }
+
+    /** Contents codes (Piece ordinals) of the squares. */
+    private static final byte EMPTY_CODE = (byte) EMPTY.ordinal(),
+        WHITE_CODE = (byte) WHITE.ordinal(),
+        BLACK_CODE = (byte) BLACK.ordinal();
+
+    /** STEP[d] is the change in square index caused by one step in
+     *  direction d. */
+    private static final int[] STEP = new int[8];
+
+    /** LENGTH[8 * s + d] is the number of squares from the square with
+     *  index s to the edge of the board in direction d. */
+    private static final byte[] LENGTH = new byte[8 * SQUARES];
+
+    /** DIRECTION[SQUARES * s + t] is the direction of the queen move
+     *  from the square with index s to that with index t, or -1, and
+     *  DISTANCE[SQUARES * s + t] is its number of steps. */
+    private static final byte[] DIRECTION = new byte[SQUARES * SQUARES],
+        DISTANCE = new byte[SQUARES * SQUARES];
+
+    /** LINES_LO[s] and LINES_HI[s] are the SquareMask words of the
+     *  squares a queen move away from the square with index s. */
+    private static final long[] LINES_LO = new long[SQUARES],
+        LINES_HI = new long[SQUARES];
+
+    static {
+        for (int d = 0; d < 8; d += 1) {
+            STEP[d] = Square.DIR[d][0] + Board.SIZE * Square.DIR[d][1];
+        }
+        Arrays.fill(DIRECTION, (byte) -1);
+        for (Square s : Square.SQUARES) {
+            for (int d = 0; d < 8; d += 1) {
+                Square[] ray = s.ray(d);
+                LENGTH[8 * s.index() + d] = (byte) ray.length;
+                for (int k = 0; k < ray.length; k += 1) {
+                    LINES_LO[s.index()] |= SquareMask.lo(ray[k]);
+                    LINES_HI[s.index()] |= SquareMask.hi(ray[k]);
+                    DIRECTION[SQUARES * s.index() + ray[k].index()] = (byte) d;
+                    DISTANCE[SQUARES * s.index() + ray[k].index()] =
+                        (byte) (k + 1);
+                }
+            }
+        }
+    }
+
+    /** Piece ordinals of the contents of each square. */
+    private final byte[] _contents = new byte[SQUARES];
+    /** _rays[8 * s + d] is the ray reach in direction d of the queen on
+     *  square s, if any. */
+    private final byte[] _rays = new byte[8 * SQUARES];
+    /** _reach[s] is the reach of the queen on square s, if any, and
+     *  _near[s] is the sum over its rays of their reaches up to NEAR. */
+    private final byte[] _reach = new byte[SQUARES],
+        _near = new byte[SQUARES];
+    /** The squares holding queens, as a SquareMask. */
+    private long _queensLo, _queensHi;
+    /** Totals of reach and of nearby squares over the queens of each
+     *  side, indexed by Piece ordinal. */
+    private final int[] _mobility = new int[Piece.values().length],
+        _nearby = new int[Piece.values().length];
+}
@@ -16,5 +16,9 @@ interface Reporter {
     /** Display MOVE as needed. */
     void reportMove(Move move);
 
+    /** Display STATS, the statistics of the search that chose the move
+     *  about to be reported, as needed. */
+    void reportInfo(SearchStats stats);
+
 }
 
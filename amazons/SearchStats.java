@@ -0,0 +1,131 @@
+package amazons;
+
+/** Statistics of an AI's search for a move (see Reporter.reportInfo):
+ *  how many positions it visited and judged, how well its moves were
+ *  ordered, how deep it went and how long it took, and how useful its
+ *  transposition table was.  Counts are summed over all the threads
+ *  that searched.
+ *  @author Zhenkai Han
+ */
+final class SearchStats {
+
+    /** Statistics of a search that completed DEPTH (as for
+     *  Searcher.search) in NANOS nanoseconds, using TABLE (which may be
+     *  null), whose statistics cover just this search.  The counts of
+     *  the searchers' nodes start at 0 (see add). */
+    SearchStats(int depth, long nanos, TranspositionTable table) {
+        _depth = depth;
+        _nanos = nanos;
+        if (table != null) {
+            _ttProbes = table.probes();
+            _ttHits = table.hits();
+            _ttCutoffs = table.cutoffs();
+        }
+    }
+
+    /** Add the counts of one searcher: NODES nodes visited, LEAVES of
+     *  them judged statically, and CUTOFFS beta cutoffs, FIRSTCUTOFFS of
+     *  which were caused by the first move searched. */
+    void add(long nodes, long leaves, long cutoffs, long firstCutoffs) {
+        _nodes += nodes;
+        _leaves += leaves;
+        _cutoffs += cutoffs;
+        _firstCutoffs += firstCutoffs;
+    }
+
+    /** Return the depth of the deepest search that completed. */
+    int depth() {
+        return _depth;
+    }
+
+    /** Return the duration of the search in nanoseconds. */
+    long nanos() {
+        return _nanos;
+    }
+
+    /** Return the number of nodes visited, including leaves. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the number of leaves judged by the evaluator. */
+    long leaves() {
+        return _leaves;
+    }
+
+    /** Return the number of beta cutoffs. */
+    long cutoffs() {
+        return _cutoffs;
+    }
+
+    /** Return the number of beta cutoffs caused by the first move
+     *  searched at a node. */
+    long firstCutoffs() {
+        return _firstCutoffs;
+    }
+
+    /** Return the fraction of beta cutoffs caused by the first move
+     *  searched, which measures the quality of move ordering. */
+    double firstCutoffRate() {
+        return _cutoffs == 0 ? 0.0 : (double) _firstCutoffs / _cutoffs;
+    }
+
+    /** Return the number of nodes visited per second. */
+    double nodesPerSecond() {
+        return _nanos == 0 ? 0.0 : _nodes * 1e9 / _nanos;
+    }
+
+    /** Return the effective branching factor: the number of moves per
+     *  ply that would give as many nodes in a uniform tree as deep as
+     *  the search.  A search to depth d looks d + 1 plies ahead. */
+    double branchingFactor() {
+        return _nodes == 0 ? 0.0 : Math.pow(_nodes, 1.0 / (_depth + 1));
+    }
+
+    /** Return the number of transposition table probes. */
+    long ttProbes() {
+        return _ttProbes;
+    }
+
+    /** Return the number of transposition table probes that found an
+     *  entry. */
+    long ttHits() {
+        return _ttHits;
+    }
+
+    /** Return the number of transposition table probes that ended the
+     *  search of a node. */
+    long ttCutoffs() {
+        return _ttCutoffs;
+    }
+
+    /** Return a short summary: depth, nodes, and speed. */
+    String summary() {
+        return String.format("depth %d  %d nodes  %.0f nodes/s", _depth,
+                             _nodes, nodesPerSecond());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("depth %d nodes %d leaves %d time %.3f nps %.0f"
+                             + " cutoffs %d first %.3f ebf %.2f"
+                             + " tt probes %d hits %d cutoffs %d",
+                             _depth, _nodes, _leaves, _nanos / 1e9,
+                             nodesPerSecond(), _cutoffs, firstCutoffRate(),
+                             branchingFactor(), _ttProbes, _ttHits,
+                             _ttCutoffs);
+    }
+
+    /** Depth completed. */
+    private final int _depth;
+
+    /** Duration in nanoseconds. */
+    private final long _nanos;
+
+    /** Searchers' counts (see add). */
+    private long _nodes, _leaves, _cutoffs, _firstCutoffs;
+
+    /** Transposition table counts. */
+    private long _ttProbes, _ttHits, _ttCutoffs;
+
+}
@@ -0,0 +1,526 @@
+package amazons;
+
+import java.util.Arrays;
+
+import static java.lang.Math.*;
+import static amazons.Piece.*;
+
+/** The game-tree search behind an AI.  A Searcher holds everything one
+ *  thread needs to search (move buffers, killer and history tables, and
+ *  node counts), and searches its own copy of the position, since Boards
+ *  are not thread-safe.  Several Searchers may share one transposition
+ *  table, which is how the helpers of a parallel search (see AI) pass
+ *  on what they find.
+ *  @author Zhenkai Han
+ */
+class Searcher {
+
+    /**
+     * A magnitude greater than a normal value.
+     */
+    static final int INFTY = Integer.MAX_VALUE;
+
+    /**
+     * The deepest iteration of iterative deepening.
+     */
+    static final int MAX_DEPTH = 40;
+
+    /**
+     * A time budget, in nanoseconds, that never runs out.
+     */
+    static final long NO_LIMIT = Long.MAX_VALUE / 4;
+
+    /**
+     * Number of nodes searched between checks of the clock.
+     */
+    private static final int CLOCK_INTERVAL = 1024;
+
+    /**
+     * Half the width of the first window tried around the value of the
+     * previous iteration of iterative deepening.
+     */
+    private static final int ASPIRATION_WINDOW = 256;
+
+    /**
+     * A value that no search returns, meaning "not known".
+     */
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+
+    /**
+     * Mask selecting the queen move (the starting and ending squares,
+     * without the throw) from a packed move.
+     */
+    private static final int QUEEN_MOVE_MASK = (1 << (2 * Move.PACK_BITS)) - 1;
+
+    /**
+     * History scores above which all history scores are halved.
+     */
+    private static final int HISTORY_LIMIT = 1 << 30;
+
+    /** A Searcher that judges positions with EVALUATOR, which must be
+     *  mine alone, and shares TABLE with any other Searchers. */
+    Searcher(Evaluator evaluator, TranspositionTable table) {
+        _evaluator = evaluator;
+        _table = table;
+    }
+
+    /** Search BOARD, which must be mine alone, to successively greater
+     *  depths from FIRST to LAST, until BUDGET nanoseconds after START
+     *  (a value of System.nanoTime()) or until stop() is called, and
+     *  return the move chosen by the deepest search that finished, or
+     *  null if none did.  Unless MAYABORT, the first search always
+     *  finishes.  Stops early once half the budget is used. */
+    Move deepen(Board board, int first, int last, long start, long budget,
+                boolean mayAbort) {
+        prepare(board);
+        _deadline = start + budget;
+        ageHistory();
+        _lastValue = UNKNOWN;
+        Move best = null;
+        int value = UNKNOWN;
+        for (int depth = first; depth <= last; depth += 1) {
+            _abortable = mayAbort || best != null;
+            try {
+                value = aspirate(board, depth, value);
+            } catch (SearchTimeout excp) {
+                while (board.numMoves() > _rootPly) {
+                    board.undo();
+                }
+                break;
+            }
+            best = _lastFoundMove;
+            _lastValue = value;
+            _depth = depth;
+            if (abs(value) == INFTY
+                || System.nanoTime() - start > budget / 2) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    /** Search BOARD, which must be mine alone, to exactly DEPTH, with no
+     *  time limit, and return its value (to WHITE, as for
+     *  Evaluator.score).  The move chosen is then bestMove(). */
+    int search(Board board, int depth) {
+        prepare(board);
+        _abortable = false;
+        int sense = board.turn() == WHITE ? 1 : -1;
+        int value = sense * findMove(board, depth, -INFTY, INFTY);
+        _depth = depth;
+        return value;
+    }
+
+    /** Abandon the current search, if it may be abandoned, as soon as
+     *  possible.  May be called from any thread. */
+    void stop() {
+        _stopped = true;
+    }
+
+    /** Undo any earlier stop(), so that my next search runs to its
+     *  limits.  Must be called before, not by, the thread that will run
+     *  that search, lest a stop() that comes first be lost. */
+    void clearStop() {
+        _stopped = false;
+    }
+
+    /** Return the move chosen by the last search. */
+    Move bestMove() {
+        return _lastFoundMove;
+    }
+
+    /** Return the value, to the side to move, of the position searched
+     *  by the last call to deepen, as found by its deepest search that
+     *  finished. */
+    int lastValue() {
+        return _lastValue;
+    }
+
+    /** Return the number of nodes visited by the last search. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the depth of the deepest search that finished in the last
+     *  call to search or deepen, or -1 if none did. */
+    int depth() {
+        return _depth;
+    }
+
+    /** Add the counts of nodes, leaves, and cutoffs of my last search to
+     *  STATS. */
+    void collect(SearchStats stats) {
+        stats.add(_nodes, _leaves, _cutoffs, _firstCutoffs);
+    }
+
+    /** Turn move ordering on iff ON.  It is normally on; turning it off is
+     *  useful for measuring its effect, and also turns off selective
+     *  search. */
+    void setMoveOrdering(boolean on) {
+        _ordering = on;
+    }
+
+    /** Search selectively as SELECTIVITY says.  Initially,
+     *  Selectivity.NONE. */
+    void setSelectivity(Selectivity selectivity) {
+        _selectivity = selectivity;
+    }
+
+    /** Set up to search from BOARD. */
+    private void prepare(Board board) {
+        _rootPly = board.numMoves();
+        _nodes = _leaves = _cutoffs = _firstCutoffs = 0;
+        _depth = -1;
+        _lastFoundMove = null;
+        Arrays.fill(_killers, TranspositionTable.NO_MOVE);
+    }
+
+    /** Count a node of the search, abandoning the search by throwing
+     *  SearchTimeout if it may be abandoned and its time is up or it
+     *  has been stopped. */
+    private void countNode() {
+        _nodes += 1;
+        if (_abortable && _nodes % CLOCK_INTERVAL == 0
+            && (_stopped || System.nanoTime() > _deadline)) {
+            throw TIMEOUT;
+        }
+    }
+
+    /** Thrown to abandon a search whose time has run out. */
+    private static class SearchTimeout extends RuntimeException {
+        /** Serialization version, though a SearchTimeout is never
+         *  serialized. */
+        private static final long serialVersionUID = 1L;
+
+        /** The (only) SearchTimeout. */
+        SearchTimeout() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** The exception thrown by countNode. */
+    private static final SearchTimeout TIMEOUT = new SearchTimeout();
+
+    /** Return the value of BOARD to the side to move, searching DEPTH
+     *  levels below the moves from BOARD, so that at DEPTH 0 each move is
+     *  judged by a static estimate of the position it leads to.  The
+     *  result is exact if it lies strictly between ALPHA and BETA; if
+     *  not, it is an upper bound (<= ALPHA) or a lower bound (>= BETA).
+     *  At the root, records the best move in _lastFoundMove.  The first
+     *  move is searched with the full window and the rest with a null
+     *  window just above ALPHA, which is quicker and suffices to show
+     *  that they are no better; only those that fail high are searched
+     *  again with the full window.  With selective search (see
+     *  Selectivity), only some moves are searched, and later ones are
+     *  first searched to reduced depth. */
+    private int findMove(Board board, int depth, int alpha, int beta) {
+        countNode();
+        if (board.winner() != null) {
+            return -INFTY;
+        }
+        boolean root = board.numMoves() == _rootPly;
+        int known = probe(board, depth, alpha, beta, !root);
+        if (known != UNKNOWN) {
+            return known;
+        }
+        int alpha0 = alpha;
+        int sense = board.turn() == WHITE ? 1 : -1;
+        int bestSoFar = UNKNOWN;
+        int bestMove = TranspositionTable.NO_MOVE;
+        int[] myMvs = possibleMoves(board);
+        int n = orderedMoves(board, myMvs, _probedMove, depth);
+        for (int i = 0; i < n; i += 1) {
+            int value;
+            board.makeMove(myMvs[i]);
+            if (depth == 0) {
+                countNode();
+                _leaves += 1;
+                value = sense * _evaluator.score(board);
+            } else if (i == 0) {
+                value = -findMove(board, depth - 1, -beta, -alpha);
+            } else {
+                int reduced =
+                    _ordering ? max(0, depth - 1 - _selectivity.reduction(i))
+                    : depth - 1;
+                value = -findMove(board, reduced, -alpha - 1, -alpha);
+                if (value > alpha && reduced < depth - 1) {
+                    value = -findMove(board, depth - 1, -alpha - 1, -alpha);
+                }
+                if (value > alpha && value < beta) {
+                    value = -findMove(board, depth - 1, -beta, -alpha);
+                }
+            }
+            board.undo();
+            if (value > bestSoFar) {
+                bestSoFar = value;
+                bestMove = myMvs[i];
+                if (root) {
+                    _lastFoundMove = Move.mv(myMvs[i]);
+                }
+                alpha = max(alpha, value);
+                if (alpha >= beta) {
+                    _cutoffs += 1;
+                    _firstCutoffs += i == 0 ? 1 : 0;
+                    recordCutoff(board, myMvs[i], depth);
+                    break;
+                }
+            }
+        }
+        store(board, depth, alpha0, beta, bestSoFar, bestMove);
+        return bestSoFar;
+    }
+
+    /** Return the value of BOARD to the side to move, searched to DEPTH
+     *  (as for findMove) with a window around GUESS, the value found by
+     *  the previous iteration (or UNKNOWN).  A narrow window gives more
+     *  cutoffs; if the value turns out to lie outside it, the window is
+     *  widened and the search repeated. */
+    private int aspirate(Board board, int depth, int guess) {
+        if (guess == UNKNOWN || abs(guess) == INFTY) {
+            return findMove(board, depth, -INFTY, INFTY);
+        }
+        long delta = ASPIRATION_WINDOW;
+        while (true) {
+            int alpha = (int) max(-INFTY, guess - delta),
+                beta = (int) min(INFTY, guess + delta);
+            int value = findMove(board, depth, alpha, beta);
+            if ((value > alpha || alpha == -INFTY)
+                && (value < beta || beta == INFTY)) {
+                return value;
+            }
+            delta *= 4;
+        }
+    }
+
+    /** Return the score recorded for BOARD in my transposition table, if
+     *  CUTOFF, it was searched to at least DEPTH, and the score settles
+     *  a search with window ALPHA, BETA; otherwise return UNKNOWN.  Sets
+     *  _probedMove to the best move recorded for BOARD, if any. */
+    private int probe(Board board, int depth, int alpha, int beta,
+                      boolean cutoff) {
+        long entry = _table.probe(board.key());
+        if (entry == TranspositionTable.MISSING) {
+            _probedMove = TranspositionTable.NO_MOVE;
+            return UNKNOWN;
+        }
+        _probedMove = TranspositionTable.move(entry);
+        if (cutoff && TranspositionTable.depth(entry) >= depth) {
+            int score = TranspositionTable.score(entry),
+                bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT
+                || (bound == TranspositionTable.LOWER && score >= beta)
+                || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                _table.recordCutoff();
+                return score;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    /** Record in my transposition table that BOARD, searched to DEPTH
+     *  with window ALPHA, BETA, has value SCORE and best move MOVE. */
+    private void store(Board board, int depth, int alpha, int beta,
+                       int score, int move) {
+        int bound;
+        if (score <= alpha) {
+            bound = TranspositionTable.UPPER;
+        } else if (score >= beta) {
+            bound = TranspositionTable.LOWER;
+        } else {
+            bound = TranspositionTable.EXACT;
+        }
+        _table.store(board.key(), depth, bound, score, move);
+    }
+
+    /** Generate the moves for the side to move on BOARD into MOVES and
+     *  return the number to be searched to DEPTH, ordered (if move
+     *  ordering is on) to find cutoffs early: first TTMOVE (the
+     *  transposition table's best move, or NO_MOVE), then the killer
+     *  moves for this ply, and then, if DEPTH > 0, the rest in
+     *  decreasing order of their history scores, or, with selective
+     *  search, of their static values (see selectMoves). */
+    private int orderedMoves(Board board, int[] moves, int ttMove,
+                             int depth) {
+        int n = board.legalMoves(board.turn(), moves);
+        if (!_ordering) {
+            return n;
+        }
+        int ply = board.numMoves() - _rootPly;
+        int front = promote(moves, 0, n, ttMove);
+        front = promote(moves, front, n, _killers[2 * ply]);
+        front = promote(moves, front, n, _killers[2 * ply + 1]);
+        if (depth > 0 && _selectivity.selective()) {
+            n = selectMoves(board, moves, front, n);
+        } else if (depth > 0) {
+            for (int i = front; i < n; i += 1) {
+                _sortKeys[i] = ((long) (HISTORY_LIMIT - _history[moves[i]])
+                                << 32) | moves[i];
+            }
+            Arrays.sort(_sortKeys, front, n);
+            for (int i = front; i < n; i += 1) {
+                moves[i] = (int) _sortKeys[i];
+            }
+        }
+        return n;
+    }
+
+    /** Sort MOVES[FRONT .. N-1], moves for the side to move on BOARD, in
+     *  decreasing order of the static values (to that side) of the
+     *  positions they lead to, and drop those that my selectivity says
+     *  are not to be searched: all but the best spears() throws for each
+     *  queen move, and all but the first width() moves overall.  Return
+     *  the number of moves left. */
+    private int selectMoves(Board board, int[] moves, int front, int n) {
+        int sense = board.turn() == WHITE ? 1 : -1;
+        for (int i = front; i < n; i += 1) {
+            countNode();
+            board.makeMove(moves[i]);
+            int value = sense * _evaluator.score(board);
+            board.undo();
+            _sortKeys[i] = ((long) -value << 32) | moves[i];
+        }
+        Arrays.sort(_sortKeys, front, n);
+        int spears = _selectivity.spears();
+        int kept = front;
+        for (int i = front; i < n; i += 1) {
+            int move = (int) _sortKeys[i];
+            int queenMove = move & QUEEN_MOVE_MASK;
+            if (spears == 0 || _throws[queenMove] < spears) {
+                _throws[queenMove] += 1;
+                moves[kept] = move;
+                kept += 1;
+            }
+        }
+        for (int i = front; i < n; i += 1) {
+            _throws[(int) _sortKeys[i] & QUEEN_MOVE_MASK] = 0;
+        }
+        int width = _selectivity.width();
+        return width == 0 ? kept : min(kept, width);
+    }
+
+    /** If MOVE occurs in MOVES[FRONT .. N-1], exchange it with
+     *  MOVES[FRONT] and return FRONT + 1.  Otherwise, return FRONT. */
+    private int promote(int[] moves, int front, int n, int move) {
+        if (move != TranspositionTable.NO_MOVE) {
+            for (int i = front; i < n; i += 1) {
+                if (moves[i] == move) {
+                    moves[i] = moves[front];
+                    moves[front] = move;
+                    return front + 1;
+                }
+            }
+        }
+        return front;
+    }
+
+    /** Record that MOVE caused a cutoff on BOARD in a search to DEPTH,
+     *  making it a killer move for this ply and raising its history
+     *  score. */
+    private void recordCutoff(Board board, int move, int depth) {
+        int ply = board.numMoves() - _rootPly;
+        if (_killers[2 * ply] != move) {
+            _killers[2 * ply + 1] = _killers[2 * ply];
+            _killers[2 * ply] = move;
+        }
+        _history[move] += (depth + 1) * (depth + 1);
+        if (_history[move] > HISTORY_LIMIT) {
+            ageHistory();
+        }
+    }
+
+    /** Scale down all history scores, so that recent cutoffs count for
+     *  more than old ones. */
+    private void ageHistory() {
+        for (int i = 0; i < _history.length; i += 1) {
+            _history[i] >>= 1;
+        }
+    }
+
+    /** Return the move buffer for the current ply of BOARD, into which
+     *  moves at that ply are generated.  Each ply of the search has its
+     *  own buffer, so that generating moves for a child does not disturb
+     *  its parent's. */
+    private int[] possibleMoves(Board board) {
+        int ply = board.numMoves() - _rootPly;
+        if (ply >= _plyMoves.length) {
+            _plyMoves = Arrays.copyOf(_plyMoves, 2 * ply);
+        }
+        if (_plyMoves[ply] == null) {
+            _plyMoves[ply] = new int[Board.MAX_MOVES];
+        }
+        return _plyMoves[ply];
+    }
+
+    /** Judge of positions at the leaves of my search. */
+    private final Evaluator _evaluator;
+
+    /** Results of earlier searches, possibly shared with other
+     *  Searchers. */
+    private final TranspositionTable _table;
+
+    /** Value of System.nanoTime() at which the current search must
+     *  stop. */
+    private long _deadline;
+
+    /** True iff the current search may be abandoned when its time is up
+     *  or it is stopped. */
+    private boolean _abortable;
+
+    /** Set (possibly by another thread) to abandon the current search. */
+    private volatile boolean _stopped;
+
+    /** Number of nodes visited by the current search. */
+    private long _nodes;
+
+    /** Numbers of leaves judged statically, of beta cutoffs, and of
+     *  beta cutoffs by the first move searched, in the current
+     *  search. */
+    private long _leaves, _cutoffs, _firstCutoffs;
+
+    /** The depth of the deepest finished search (see depth). */
+    private int _depth = -1;
+
+    /**
+     * The best move at the root found by the last call to findMove.
+     */
+    private Move _lastFoundMove;
+
+    /** The value found by the deepest finished search of the last call
+     *  to deepen (see lastValue). */
+    private int _lastValue = UNKNOWN;
+
+    /** The best move recorded in my transposition table by the last call
+     *  to probe, or NO_MOVE. */
+    private int _probedMove;
+
+    /** True iff moves are ordered before being searched. */
+    private boolean _ordering = true;
+
+    /** _killers[2 * p] and _killers[2 * p + 1] are the two most recent
+     *  moves that caused cutoffs at ply p of the current search. */
+    private int[] _killers = new int[2 * (MAX_DEPTH + 2)];
+
+    /** History scores: for each packed move, a measure of how often and
+     *  how deeply it has caused cutoffs. */
+    private int[] _history = new int[1 << (3 * Move.PACK_BITS)];
+
+    /** Scratch space for sorting moves by history score. */
+    private long[] _sortKeys = new long[Board.MAX_MOVES];
+
+    /** How selective my search is. */
+    private Selectivity _selectivity = Selectivity.NONE;
+
+    /** Scratch space for selectMoves: for each queen move (as selected
+     *  by QUEEN_MOVE_MASK), the number of its throws kept so far.  All
+     *  zero between calls. */
+    private int[] _throws = new int[QUEEN_MOVE_MASK + 1];
+
+    /** The value of numMoves() on the board at the root of the current
+     *  search. */
+    private int _rootPly;
+
+    /** Move buffers for each ply of the search, indexed by distance from
+     *  the root, allocated as needed. */
+    private int[][] _plyMoves = new int[MAX_DEPTH + 2][];
+
+}
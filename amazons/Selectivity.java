@@ -0,0 +1,140 @@
+package amazons;
+
+import static amazons.Utils.error;
+
+/** The settings of selective search: how the search narrows itself to
+ *  cope with the hundreds or thousands of moves available at each ply.
+ *  When any setting is non-zero, moves at nodes above the leaves are
+ *  first ordered by a static estimate of the positions they lead to.
+ *  Then:
+ *  <ul>
+ *  <li> only the first full() moves are searched to full depth; later
+ *       ones are searched reduction() plies shallower, and reduction()
+ *       plies shallower again at each doubling of the move number (see
+ *       reduction(int)), and searched again to full depth only if they
+ *       turn out better than expected;
+ *  <li> at most spears() arrow throws are considered for each queen
+ *       move (pruning at the half-move level);
+ *  <li> only the first width() moves are searched at all.
+ *  </ul>
+ *  A setting of 0 disables the corresponding kind of selection.
+ *  Selectivities are immutable.
+ *  @author Zhenkai Han
+ */
+final class Selectivity {
+
+    /** No selectivity: every move is searched to full depth. */
+    static final Selectivity NONE = new Selectivity(0, 0, 0, 0);
+
+    /** The selectivity that automated players use unless told
+     *  otherwise. */
+    static final Selectivity DEFAULT = new Selectivity(4, 1, 0, 0);
+
+    /** A selectivity searching the first FULL moves to full depth and
+     *  reducing the rest by REDUCTION plies, considering at most SPEARS
+     *  throws per queen move and WIDTH moves in all.  All must be
+     *  non-negative. */
+    Selectivity(int full, int reduction, int width, int spears) {
+        if (full < 0 || reduction < 0 || width < 0 || spears < 0) {
+            throw error("selectivity settings must be non-negative");
+        }
+        _full = full;
+        _reduction = reduction;
+        _width = width;
+        _spears = spears;
+    }
+
+    /** Return the Selectivity denoted by SPEC, which is either "off"
+     *  (NONE), "default" (DEFAULT), or "FULL,REDUCTION,WIDTH,SPEARS"
+     *  (four non-negative integers, as for the constructor). */
+    static Selectivity parse(String spec) {
+        switch (spec) {
+        case "off":
+            return NONE;
+        case "default":
+            return DEFAULT;
+        default:
+            String[] fields = spec.split(",");
+            if (fields.length != 4) {
+                throw error("bad selectivity: %s", spec);
+            }
+            try {
+                return new Selectivity(Integer.parseInt(fields[0]),
+                                       Integer.parseInt(fields[1]),
+                                       Integer.parseInt(fields[2]),
+                                       Integer.parseInt(fields[3]));
+            } catch (NumberFormatException excp) {
+                throw error("bad selectivity: %s", spec);
+            }
+        }
+    }
+
+    /** Return true iff any kind of selection is enabled. */
+    boolean selective() {
+        return _full != 0 || _width != 0 || _spears != 0;
+    }
+
+    /** Return the number of moves at each node searched to full depth,
+     *  or 0 if all are. */
+    int full() {
+        return _full;
+    }
+
+    /** Return the number of plies by which moves after the first
+     *  full() are reduced. */
+    int reduction() {
+        return _reduction;
+    }
+
+    /** Return the number of moves searched at each node, or 0 if all
+     *  are. */
+    int width() {
+        return _width;
+    }
+
+    /** Return the number of throws considered for each queen move, or 0
+     *  if all are. */
+    int spears() {
+        return _spears;
+    }
+
+    /** Return the number of plies by which the move numbered I (from 0)
+     *  in a node's ordering is to be searched less deeply than the
+     *  first: 0 for the first full() moves, reduction() for the next
+     *  full(), 2 * reduction() for the 2 * full() after those, and so
+     *  on. */
+    int reduction(int i) {
+        if (_full == 0 || i < _full) {
+            return 0;
+        }
+        return _reduction * (32 - Integer.numberOfLeadingZeros(i / _full));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Selectivity)) {
+            return false;
+        }
+        Selectivity other = (Selectivity) obj;
+        return _full == other._full && _reduction == other._reduction
+            && _width == other._width && _spears == other._spears;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((_full * 31 + _reduction) * 31 + _width) * 31 + _spears;
+    }
+
+    @Override
+    public String toString() {
+        if (!selective()) {
+            return "off";
+        }
+        return String.format("%d,%d,%d,%d", _full, _reduction, _width,
+                             _spears);
+    }
+
+    /** The settings, as for the constructor. */
+    private final int _full, _reduction, _width, _spears;
+
+}
@@ -0,0 +1,108 @@
+package amazons;
+
+import static amazons.Utils.error;
+
+/** A sequential probability ratio test of whether one player is
+ *  stronger than another, judged from the results of pairs of games
+ *  between them that start from the same position, with colors swapped.
+ *  The hypotheses are H0, that the first player's advantage is ELO0
+ *  Elo points, and H1, that it is ELO1 > ELO0.  After each pair, the
+ *  log-likelihood ratio of H1 to H0 is compared with bounds set by the
+ *  acceptable rates of false positives (ALPHA) and false negatives
+ *  (BETA); the test ends when it leaves them.  Since the two games of a
+ *  pair are correlated, the ratio is computed from the pairs' scores
+ *  (0, 1/2, or 1), using the normal approximation of their mean with
+ *  their observed variance.  So that the variance is never 0, which
+ *  would leave a run of identical pairs (say, all won by one side)
+ *  undecided, the scores include a prior of two pseudo-pairs, one won by
+ *  each side.
+ *  @author Zhenkai Han
+ */
+final class Sprt {
+
+    /** The number of pseudo-pairs in the prior, and the sum of their
+     *  scores (which is also the sum of their squares): one pair scores
+     *  1 and the other 0. */
+    private static final int PRIOR_PAIRS = 2, PRIOR_SUM = 1;
+
+    /** A test of H0: advantage ELO0 against H1: advantage ELO1, with
+     *  error rates ALPHA and BETA (each strictly between 0 and 1/2). */
+    Sprt(double elo0, double elo1, double alpha, double beta) {
+        if (elo0 >= elo1) {
+            throw error("elo0 must be less than elo1");
+        }
+        if (alpha <= 0 || alpha >= 0.5 || beta <= 0 || beta >= 0.5) {
+            throw error("error rates must be between 0 and 0.5");
+        }
+        _score0 = score(elo0);
+        _score1 = score(elo1);
+        _lower = Math.log(beta / (1 - alpha));
+        _upper = Math.log((1 - beta) / alpha);
+    }
+
+    /** Return the expected score of a player whose advantage is ELO. */
+    static double score(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /** Record a pair of games of which the first player won WINS (0, 1,
+     *  or 2). */
+    void addPair(int wins) {
+        double score = wins / 2.0;
+        _pairs += 1;
+        _sum += score;
+        _sumSquares += score * score;
+    }
+
+    /** Return the number of pairs recorded. */
+    int pairs() {
+        return _pairs;
+    }
+
+    /** Return the log-likelihood ratio of H1 to H0. */
+    double llr() {
+        if (_pairs == 0) {
+            return 0;
+        }
+        int n = _pairs + PRIOR_PAIRS;
+        double mean = (_sum + PRIOR_SUM) / n,
+            variance = (_sumSquares + PRIOR_SUM) / n - mean * mean;
+        return n * ((mean - _score0) * (mean - _score0)
+                    - (mean - _score1) * (mean - _score1))
+            / (2 * variance);
+    }
+
+    /** Return the ratio below which H0 is accepted. */
+    double lower() {
+        return _lower;
+    }
+
+    /** Return the ratio above which H1 is accepted. */
+    double upper() {
+        return _upper;
+    }
+
+    /** Return true iff the test has ended. */
+    boolean done() {
+        double llr = llr();
+        return llr <= _lower || llr >= _upper;
+    }
+
+    /** Return true iff the test has ended by accepting H1. */
+    boolean acceptedH1() {
+        return llr() >= _upper;
+    }
+
+    /** Expected scores under H0 and H1. */
+    private final double _score0, _score1;
+
+    /** Bounds on the log-likelihood ratio. */
+    private final double _lower, _upper;
+
+    /** Number of pairs recorded. */
+    private int _pairs;
+
+    /** Sum of the pairs' scores and of their squares. */
+    private double _sum, _sumSquares;
+
+}
@@ -43,18 +43,13 @@ final class Square {
 
     /** Return true iff THIS - TO is a valid queen move. */
     boolean isQueenMove(Square to) {
-        int dCol = to.col() - col();
-        int dRow = to.row() - row();
-        return this != to
-                && exists(to.col(), to.row())
-                && (dCol == 0 || dRow == 0
-                || (Math.abs(dCol) == Math.abs(dRow)));
+        return DIRECTION[_index][to._index] >= 0;
     }
 
     /** Definitions of direction for queenMove.  DIR[k] = (dcol, drow)
      *  means that to going one step from (col, row) in direction k,
      *  brings us to (col + dcol, row + drow). */
-    private static final int[][] DIR = {
+    static final int[][] DIR = {
         { 0, 1 }, { 1, 1 }, { 1, 0 }, { 1, -1 },
         { 0, -1 }, { -1, -1 }, { -1, 0 }, { -1, 1 }
     };
@@ -65,29 +60,37 @@ final class Square {
      *  northwest. If DIR has another value, return null. Thus, unless the
      *  result is null the resulting square is a queen move away from me. */
     Square queenMove(int dir, int steps) {
-        if (dir >= 0 && dir <= 7 && steps > 0
-                && isQueenMove(sq(col() + steps * DIR[dir][0],
-                row() + steps * DIR[dir][1]))) {
-            return sq(col() + steps * DIR[dir][0], row() + steps * DIR[dir][1]);
+        if (dir >= 0 && dir <= 7 && steps > 0 && steps <= _rays[dir].length) {
+            return _rays[dir][steps - 1];
         } else {
             return null;
         }
     }
 
+    /** Return the squares from me to the edge of the board in direction
+     *  DIR, nearest first.  The array is shared and must not be
+     *  modified. */
+    Square[] ray(int dir) {
+        return _rays[dir];
+    }
+
     /** Return the direction (an int as defined in the documentation
      *  for queenMove) of the queen move THIS-TO. */
     int direction(Square to) {
         assert isQueenMove(to);
-        int d = 0;
-        int dCol = to.col() - col();
-        int dRow = to.row() - row();
-        for (; d < 8; d++) {
-            if ((dCol == DIR[d][0] || DIR[d][0] * dCol > 0)
-                    && (dRow == DIR[d][1] || DIR[d][1] * dRow > 0)) {
-                return d;
-            }
-        }
-        return -1;
+        return DIRECTION[_index][to._index];
+    }
+
+    /** Return the low word of the SquareMask of the squares strictly
+     *  between me and TO, which must be a queen move away. */
+    long betweenLo(Square to) {
+        return BETWEEN_LO[_index * SQUARES.length + to._index];
+    }
+
+    /** Return the high word of the SquareMask of the squares strictly
+     *  between me and TO, which must be a queen move away. */
+    long betweenHi(Square to) {
+        return BETWEEN_HI[_index * SQUARES.length + to._index];
     }
 
     @Override
@@ -102,6 +105,9 @@ final class Square {
 
     /** Return true iff D and S is a legal Queen move. */
     boolean existsMove(int d, int s) {
+        if (s > 0) {
+            return s <= _rays[d].length;
+        }
         return exists(col() + s * DIR[d][0], row() + s * DIR[d][1]);
     }
 
@@ -163,10 +169,49 @@ final class Square {
     /** SQUARES viewed as a List. */
     private static final List<Square> SQUARE_LIST = Arrays.asList(SQUARES);
 
+    /** DIRECTION[i][j] is the direction of the queen move from the square
+     *  with index i to that with index j, or -1 if there is none. */
+    private static final byte[][] DIRECTION =
+        new byte[SQUARES.length][SQUARES.length];
+
+    /** BETWEEN_LO[i * 100 + j] and BETWEEN_HI[i * 100 + j] are the
+     *  SquareMask words of the squares strictly between the squares with
+     *  indices i and j, if they are a queen move apart. */
+    private static final long[]
+        BETWEEN_LO = new long[SQUARES.length * SQUARES.length],
+        BETWEEN_HI = new long[SQUARES.length * SQUARES.length];
+
     static {
         for (int i = Board.SIZE * Board.SIZE - 1; i >= 0; i -= 1) {
             SQUARES[i] = new Square(i);
         }
+        for (byte[] row : DIRECTION) {
+            Arrays.fill(row, (byte) -1);
+        }
+        for (Square from : SQUARES) {
+            from._rays = new Square[8][];
+            for (int d = 0; d < 8; d += 1) {
+                int len;
+                for (len = 0; exists(from.col() + (len + 1) * DIR[d][0],
+                                     from.row() + (len + 1) * DIR[d][1]);
+                     len += 1) {
+                    continue;
+                }
+                from._rays[d] = new Square[len];
+                long lo, hi;
+                lo = hi = 0;
+                for (int s = 1; s <= len; s += 1) {
+                    Square to = sq(from.col() + s * DIR[d][0],
+                                   from.row() + s * DIR[d][1]);
+                    from._rays[d][s - 1] = to;
+                    DIRECTION[from._index][to._index] = (byte) d;
+                    BETWEEN_LO[from._index * SQUARES.length + to._index] = lo;
+                    BETWEEN_HI[from._index * SQUARES.length + to._index] = hi;
+                    lo |= SquareMask.lo(to);
+                    hi |= SquareMask.hi(to);
+                }
+            }
+        }
     }
 
     /** My index position. */
@@ -178,4 +223,8 @@ final class Square {
     /** My String denotation. */
     private final String _str;
 
+    /** _rays[d] contains the squares from me to the edge of the board in
+     *  direction d, nearest first. */
+    private Square[][] _rays;
+
 }
@@ -0,0 +1,123 @@
+package amazons;
+
+import static amazons.Square.DIR;
+
+/** Operations on sets of Squares represented as 100-bit masks.  A mask
+ *  is carried as a pair of longs (LO, HI): bit K of LO is set iff the
+ *  Square with index K (0 <= K < 64) is in the set, and bit K of HI is
+ *  set iff the Square with index K + 64 is.  Only the low 36 bits of HI
+ *  are ever used.  Since Java has no 128-bit integers, each operation
+ *  that produces a mask comes in a ...Lo and a ...Hi form.
+ *  @author Zhenkai Han
+ */
+final class SquareMask {
+
+    /** The bits of a high word that denote actual squares. */
+    static final long HI_BITS = (1L << (Board.SIZE * Board.SIZE - 64)) - 1;
+
+    /** Return the low word of the singleton mask for the Square with
+     *  index INDEX. */
+    static long lo(int index) {
+        return index < 64 ? 1L << index : 0L;
+    }
+
+    /** Return the high word of the singleton mask for the Square with
+     *  index INDEX. */
+    static long hi(int index) {
+        return index >= 64 ? 1L << (index - 64) : 0L;
+    }
+
+    /** Return the low word of the singleton mask for S. */
+    static long lo(Square s) {
+        return lo(s.index());
+    }
+
+    /** Return the high word of the singleton mask for S. */
+    static long hi(Square s) {
+        return hi(s.index());
+    }
+
+    /** Return true iff the mask LO, HI contains the Square with index
+     *  INDEX. */
+    static boolean contains(long lo, long hi, int index) {
+        if (index < 64) {
+            return (lo & (1L << index)) != 0;
+        } else {
+            return (hi & (1L << (index - 64))) != 0;
+        }
+    }
+
+    /** Return the number of squares in the mask LO, HI. */
+    static int size(long lo, long hi) {
+        return Long.bitCount(lo) + Long.bitCount(hi);
+    }
+
+    /** Return the index of the lowest-numbered square in LO, HI, or -1
+     *  if the mask is empty. */
+    static int first(long lo, long hi) {
+        if (lo != 0) {
+            return Long.numberOfTrailingZeros(lo);
+        } else if (hi != 0) {
+            return 64 + Long.numberOfTrailingZeros(hi);
+        } else {
+            return -1;
+        }
+    }
+
+    /** Return the low word of the mask obtained by moving every square
+     *  of LO, HI one step in direction DIR (as for Square.queenMove),
+     *  dropping squares that would leave the board. */
+    static long shiftLo(long lo, long hi, int dir) {
+        int k = SHIFT[dir];
+        long result;
+        if (k > 0) {
+            result = lo << k;
+        } else {
+            result = (lo >>> -k) | (hi << (64 + k));
+        }
+        return result & KEEP_LO[dir];
+    }
+
+    /** Return the high word of the mask obtained by moving every square
+     *  of LO, HI one step in direction DIR (as for Square.queenMove),
+     *  dropping squares that would leave the board. */
+    static long shiftHi(long lo, long hi, int dir) {
+        int k = SHIFT[dir];
+        long result;
+        if (k > 0) {
+            result = (hi << k) | (lo >>> (64 - k));
+        } else {
+            result = hi >>> -k;
+        }
+        return result & KEEP_HI[dir];
+    }
+
+    /** SHIFT[d] is the change in square index caused by one step in
+     *  direction d. */
+    private static final int[] SHIFT = new int[8];
+
+    /** KEEP_LO[d] and KEEP_HI[d] are the squares that may be reached by
+     *  one step in direction d: that is, all squares except the column
+     *  that a step in direction d would have wrapped around into. */
+    private static final long[] KEEP_LO = new long[8], KEEP_HI = new long[8];
+
+    static {
+        for (int d = 0; d < 8; d += 1) {
+            SHIFT[d] = DIR[d][0] + Board.SIZE * DIR[d][1];
+            long keepLo, keepHi;
+            keepLo = keepHi = 0;
+            for (int i = 0; i < Board.SIZE * Board.SIZE; i += 1) {
+                int col = i % Board.SIZE;
+                if ((DIR[d][0] > 0 && col == 0)
+                    || (DIR[d][0] < 0 && col == Board.SIZE - 1)) {
+                    continue;
+                }
+                keepLo |= lo(i);
+                keepHi |= hi(i);
+            }
+            KEEP_LO[d] = keepLo;
+            KEEP_HI[d] = keepHi;
+        }
+    }
+
+}
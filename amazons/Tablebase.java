@@ -0,0 +1,153 @@
+package amazons;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static amazons.SquareMask.*;
+import static amazons.Utils.error;
+
+/** A table of the longest sequences of moves available in small areas,
+ *  read from a file prepared in advance (see TablebaseBuilder).  An area
+ *  here is a set of squares, empty or holding one or two queens of the
+ *  same side, that fits in a WINDOW x WINDOW box, every other square
+ *  being blocked.  Since the answer does not depend on where the box
+ *  is, an area is moved to the lower-left corner of the box and
+ *  described by the set of its squares there (a CELLS-bit mask, cell
+ *  x + WINDOW * y for column x and row y of the box) and by the cells
+ *  of its queens; these index the table directly (see index).
+ *
+ *  The file is a header followed by one byte per entry.  The table is
+ *  built in tiers, by number of squares in the area, and the header
+ *  records how many tiers are complete; areas with more squares than
+ *  that are not in the table.  The file is memory-mapped, so that
+ *  opening it reads nothing but the header.  A Tablebase is immutable,
+ *  and may be shared by threads.
+ *  @author Zhenkai Han
+ */
+final class Tablebase {
+
+    /** The first four bytes of a tablebase file: "AMZT". */
+    static final int MAGIC = 0x414D5A54;
+
+    /** The version of the file format described here. */
+    static final int VERSION = 1;
+
+    /** The width and height of the box that areas must fit in. */
+    static final int WINDOW = 4;
+
+    /** Number of cells in the box. */
+    static final int CELLS = WINDOW * WINDOW;
+
+    /** The most queens in an area. */
+    static final int MAX_QUEENS = 2;
+
+    /** Number of bytes in the header: MAGIC, VERSION, WINDOW, and the
+     *  number of complete tiers, as big-endian ints. */
+    static final int HEADER_BYTES = 16;
+
+    /** Offset in the header of the number of complete tiers. */
+    static final int TIERS_OFFSET = 12;
+
+    /** Number of entries in the table. */
+    static final int ENTRIES = 1 << (CELLS + 8);
+
+    /** Value of probe() for an area not in the table. */
+    static final int UNKNOWN = -1;
+
+    /** The tablebase in the file named FILENAME.  Throws IOException if
+     *  the file cannot be read, and IllegalArgumentException if it is
+     *  not a tablebase. */
+    static Tablebase open(String fileName) throws IOException {
+        MappedByteBuffer entries;
+        try (FileChannel channel =
+             FileChannel.open(Paths.get(fileName), READ)) {
+            entries = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                  channel.size());
+        }
+        checkHeader(entries, fileName);
+        return new Tablebase(entries);
+    }
+
+    /** A tablebase whose file is mapped to ENTRIES. */
+    private Tablebase(MappedByteBuffer entries) {
+        _entries = entries;
+        _tiers = entries.getInt(TIERS_OFFSET);
+    }
+
+    /** Check that FILE, the contents of the file named FILENAME, is a
+     *  tablebase in the current format. */
+    static void checkHeader(MappedByteBuffer file, String fileName) {
+        if (file.capacity() != HEADER_BYTES + ENTRIES
+            || file.getInt(0) != MAGIC || file.getInt(4) != VERSION
+            || file.getInt(8) != WINDOW
+            || file.getInt(TIERS_OFFSET) < 0
+            || file.getInt(TIERS_OFFSET) > CELLS) {
+            throw error("not a tablebase: %s", fileName);
+        }
+    }
+
+    /** Return the largest number of squares in areas in the table. */
+    int tiers() {
+        return _tiers;
+    }
+
+    /** Return the index of the entry for the area with cells OPEN (a
+     *  mask) and queens at cells QUEEN1 <= QUEEN2, which are equal if
+     *  the area has only one queen. */
+    static int index(int open, int queen1, int queen2) {
+        return (open << 8) | (queen1 << 4) | queen2;
+    }
+
+    /** Return the length of the longest sequence of moves that the
+     *  queens QLO, QHI can make when the only empty squares are ELO,
+     *  EHI, or UNKNOWN if that area is not in the table. */
+    int probe(long eLo, long eHi, long qLo, long qHi) {
+        long aLo = eLo | qLo, aHi = eHi | qHi;
+        int queens = size(qLo, qHi);
+        if (queens == 0 || queens > MAX_QUEENS
+            || size(aLo, aHi) > _tiers) {
+            return UNKNOWN;
+        }
+        int minCol = Board.SIZE, minRow = Board.SIZE, maxCol = -1,
+            maxRow = -1;
+        for (long lo = aLo, hi = aHi; lo != 0 || hi != 0; ) {
+            int k = first(lo, hi);
+            lo &= ~lo(k);
+            hi &= ~hi(k);
+            int col = k % Board.SIZE, row = k / Board.SIZE;
+            minCol = Math.min(minCol, col);
+            maxCol = Math.max(maxCol, col);
+            minRow = Math.min(minRow, row);
+            maxRow = Math.max(maxRow, row);
+        }
+        if (maxCol - minCol >= WINDOW || maxRow - minRow >= WINDOW) {
+            return UNKNOWN;
+        }
+        int open = 0, queen1 = -1, queen2 = -1;
+        for (long lo = aLo, hi = aHi; lo != 0 || hi != 0; ) {
+            int k = first(lo, hi);
+            lo &= ~lo(k);
+            hi &= ~hi(k);
+            int cell = k % Board.SIZE - minCol
+                + WINDOW * (k / Board.SIZE - minRow);
+            open |= 1 << cell;
+            if (contains(qLo, qHi, k)) {
+                if (queen1 < 0) {
+                    queen1 = cell;
+                }
+                queen2 = cell;
+            }
+        }
+        return _entries.get(HEADER_BYTES + index(open, queen1, queen2));
+    }
+
+    /** The contents of my file. */
+    private final MappedByteBuffer _entries;
+
+    /** Number of complete tiers in my file. */
+    private final int _tiers;
+
+}
@@ -0,0 +1,217 @@
+package amazons;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static java.nio.file.StandardOpenOption.*;
+import static amazons.Tablebase.*;
+
+import ucb.util.CommandArgs;
+
+/** A program that builds a tablebase (see Tablebase) by retrograde
+ *  analysis.  Each move in an area fills one of its squares, so the
+ *  longest sequence of moves in an area of N squares is found from
+ *  those in areas of N - 1 squares.  The table is therefore filled in
+ *  tiers, by number of squares, smallest first.  The areas of a tier
+ *  are divided among several threads.  After each tier, the file is
+ *  written out and its header updated, so that an interrupted build
+ *  resumes from the last complete tier.
+ *  @author Zhenkai Han
+ */
+public class TablebaseBuilder {
+
+    /** Build a tablebase as ARGS direct (see usage). */
+    public static void main(String... args) {
+        CommandArgs options =
+            new CommandArgs("--threads={0,1} --tiers={0,1} --={1}", args);
+        if (!options.ok()) {
+            usage();
+        }
+        int threads = Runtime.getRuntime().availableProcessors(),
+            tiers = CELLS;
+        try {
+            if (options.contains("--threads")) {
+                threads = Integer.parseInt(options.getFirst("--threads"));
+            }
+            if (options.contains("--tiers")) {
+                tiers = Integer.parseInt(options.getFirst("--tiers"));
+            }
+        } catch (NumberFormatException excp) {
+            usage();
+        }
+        if (threads < 1 || tiers < 0 || tiers > CELLS) {
+            usage();
+        }
+        String fileName = options.get("--").get(0);
+        try {
+            new TablebaseBuilder(threads).build(fileName, tiers);
+        } catch (IOException | IllegalArgumentException excp) {
+            System.err.printf("Could not build tablebase: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Print a usage message and exit. */
+    private static void usage() {
+        System.err.println("Usage: java amazons.TablebaseBuilder"
+                           + " [--threads=N] [--tiers=N] FILE");
+        System.exit(1);
+    }
+
+    /** A builder that uses THREADS threads. */
+    TablebaseBuilder(int threads) {
+        _threads = threads;
+    }
+
+    /** Fill the tablebase in the file named FILENAME with all areas of
+     *  up to TIERS squares, creating the file if need be, and starting
+     *  after the last tier it already holds.  An existing file that is
+     *  not a tablebase is rejected unchanged. */
+    void build(String fileName, int tiers) throws IOException {
+        try (FileChannel channel =
+             FileChannel.open(Paths.get(fileName), CREATE, READ, WRITE)) {
+            boolean fresh = channel.size() == 0;
+            if (!fresh) {
+                checkHeader(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                        channel.size()),
+                            fileName);
+            }
+            _table = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                                 HEADER_BYTES + ENTRIES);
+            if (fresh) {
+                _table.putInt(0, MAGIC);
+                _table.putInt(4, VERSION);
+                _table.putInt(8, WINDOW);
+                _table.putInt(TIERS_OFFSET, 0);
+            }
+            for (int tier = _table.getInt(TIERS_OFFSET) + 1; tier <= tiers;
+                 tier += 1) {
+                buildTier(tier);
+                _table.force();
+                _table.putInt(TIERS_OFFSET, tier);
+                _table.force();
+            }
+        } finally {
+            _table = null;
+        }
+    }
+
+    /** Fill in the entries for areas of TIER squares, dividing them
+     *  among my threads. */
+    private void buildTier(int tier) {
+        Thread[] helpers = new Thread[_threads - 1];
+        for (int i = 0; i < helpers.length; i += 1) {
+            final int part = i + 1;
+            helpers[i] = new Thread(() -> buildPart(tier, part));
+            helpers[i].start();
+        }
+        buildPart(tier, 0);
+        for (Thread helper : helpers) {
+            boolean done = false;
+            while (!done) {
+                try {
+                    helper.join();
+                    done = true;
+                } catch (InterruptedException excp) {
+                    /* Keep waiting. */
+                }
+            }
+        }
+    }
+
+    /** Fill in the entries for those areas of TIER squares whose masks
+     *  are congruent to PART modulo the number of threads. */
+    private void buildPart(int tier, int part) {
+        for (int open = part; open < 1 << CELLS; open += _threads) {
+            if (Integer.bitCount(open) != tier) {
+                continue;
+            }
+            for (int q1 = 0; q1 < CELLS; q1 += 1) {
+                if ((open & (1 << q1)) == 0) {
+                    continue;
+                }
+                for (int q2 = q1; q2 < CELLS; q2 += 1) {
+                    if ((open & (1 << q2)) != 0) {
+                        _table.put(HEADER_BYTES + index(open, q1, q2),
+                                   (byte) longest(open, q1, q2));
+                    }
+                }
+            }
+        }
+    }
+
+    /** Return the length of the longest sequence of moves in the area
+     *  with cells OPEN and queens at cells QUEEN1 <= QUEEN2 (equal if
+     *  there is one queen), looking up the areas that each move leads
+     *  to in the previous tier. */
+    private int longest(int open, int queen1, int queen2) {
+        int empty = open & ~(1 << queen1) & ~(1 << queen2);
+        int upper = Integer.bitCount(empty), best = 0;
+        int queens = queen1 == queen2 ? 1 : 2;
+        for (int k = 0; k < queens; k += 1) {
+            int from = k == 0 ? queen1 : queen2;
+            for (int d = 0; d < 8; d += 1) {
+                for (int to : RAYS[from][d]) {
+                    if ((empty & (1 << to)) == 0) {
+                        break;
+                    }
+                    int empty1 = (empty & ~(1 << to)) | (1 << from);
+                    int other = queens == 1 ? to : k == 0 ? queen2 : queen1;
+                    int lower = Math.min(to, other),
+                        higher = Math.max(to, other);
+                    for (int d2 = 0; d2 < 8; d2 += 1) {
+                        for (int spear : RAYS[to][d2]) {
+                            if ((empty1 & (1 << spear)) == 0) {
+                                break;
+                            }
+                            int value =
+                                1 + _table.get(HEADER_BYTES
+                                               + index(open & ~(1 << spear),
+                                                       lower, higher));
+                            if (value > best) {
+                                best = value;
+                                if (best == upper) {
+                                    return best;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /** The cells on the ray from cell c in direction d (as for
+     *  Square.queenMove), nearest first, are RAYS[c][d]. */
+    private static final int[][][] RAYS = new int[CELLS][8][];
+
+    static {
+        for (int c = 0; c < CELLS; c += 1) {
+            for (int d = 0; d < 8; d += 1) {
+                int[] ray = new int[WINDOW];
+                int n = 0;
+                int x = c % WINDOW + Square.DIR[d][0],
+                    y = c / WINDOW + Square.DIR[d][1];
+                while (x >= 0 && x < WINDOW && y >= 0 && y < WINDOW) {
+                    ray[n] = x + WINDOW * y;
+                    n += 1;
+                    x += Square.DIR[d][0];
+                    y += Square.DIR[d][1];
+                }
+                RAYS[c][d] = Arrays.copyOf(ray, n);
+            }
+        }
+    }
+
+    /** Number of threads to build with. */
+    private final int _threads;
+
+    /** The file being built, while it is. */
+    private MappedByteBuffer _table;
+
+}
@@ -0,0 +1,200 @@
+package amazons;
+
+import java.util.Arrays;
+
+import static java.lang.Math.*;
+import static amazons.Piece.*;
+import static amazons.SquareMask.*;
+
+/** An evaluator that judges who controls the empty squares.  For each
+ *  side, it finds by breadth-first search the queen distance (fewest
+ *  queen moves needed by some queen of that side, ignoring spears thrown
+ *  on the way) and the king distance (the same for one-step moves) to
+ *  every empty square.  From these come
+ *  <ul>
+ *  <li> territory terms T1 and T2: the number of squares each side
+ *       reaches first by queen and by king moves, a tie going to the
+ *       side to move;
+ *  <li> position terms C1, summing 2**-d over squares at queen distance
+ *       d, and C2, the king distance difference clipped to +/-1 per
+ *       square; and
+ *  <li> a mobility term: the number of moves of each queen, up to a cap,
+ *       so that freeing a hemmed-in queen counts for more than adding to
+ *       the moves of a free one.
+ *  </ul>
+ *  Their weights depend on the phase of the game, measured by how much
+ *  territory is still contested: while the queens interact, position and
+ *  mobility matter; once the board has divided into separate regions,
+ *  only T1 does.  Values are in units of 1/ONE of a square.
+ *
+ *  Distances are kept in arrays allocated once per evaluator, and the
+ *  searches work on square masks, so scoring allocates nothing.
+ *  @author Zhenkai Han
+ */
+class TerritoryEvaluator implements Evaluator {
+
+    /** The value of one square. */
+    static final int ONE = 1024;
+
+    /** Number of squares on the board. */
+    private static final int SQUARES = Board.SIZE * Board.SIZE;
+
+    /** Distance to a square that cannot be reached. */
+    private static final int UNREACHED = Byte.MAX_VALUE;
+
+    /** Value of a square reached first by both sides, to the side to
+     *  move. */
+    private static final int TIE = ONE / 5;
+
+    /** Number of squares' worth of contested territory (see score) at
+     *  and above which the game is in its opening phase. */
+    private static final int FULL_CONTEST = 40;
+
+    /** Greatest number of moves of a queen that adds to mobility. */
+    private static final int MOBILITY_CAP = 10;
+
+    /** Value of one move of a queen, early in the game. */
+    private static final int MOBILITY = ONE / 4;
+
+    /** A template TerritoryEvaluator (see Evaluator.create). */
+    TerritoryEvaluator() {
+    }
+
+    @Override
+    public Evaluator create(Piece side) {
+        return new TerritoryEvaluator();
+    }
+
+    @Override
+    public int score(Board board) {
+        _emptyLo = board.maskLo(EMPTY);
+        _emptyHi = board.maskHi(EMPTY);
+        long whiteLo = board.maskLo(WHITE), whiteHi = board.maskHi(WHITE),
+            blackLo = board.maskLo(BLACK), blackHi = board.maskHi(BLACK);
+        distances(whiteLo, whiteHi, true, _queenWhite);
+        distances(blackLo, blackHi, true, _queenBlack);
+        distances(whiteLo, whiteHi, false, _kingWhite);
+        distances(blackLo, blackHi, false, _kingBlack);
+
+        int tie = board.turn() == WHITE ? TIE : -TIE;
+        int t1, t2, c1, c2, contested;
+        t1 = t2 = c1 = c2 = contested = 0;
+        long lo = _emptyLo, hi = _emptyHi;
+        for (int i = first(lo, hi); i >= 0; i = first(lo, hi)) {
+            int qw = _queenWhite[i], qb = _queenBlack[i],
+                kw = _kingWhite[i], kb = _kingBlack[i];
+            t1 += owner(qw, qb, tie);
+            t2 += owner(kw, kb, tie);
+            c1 += POWER[qw] - POWER[qb];
+            c2 += CLIPPED[kb - kw + UNREACHED];
+            if (qw != UNREACHED && qb != UNREACHED) {
+                contested += POWER[abs(qw - qb)];
+            }
+            lo &= ~SquareMask.lo(i);
+            hi &= ~SquareMask.hi(i);
+        }
+        int mobility = mobility(board, whiteLo, whiteHi)
+            - mobility(board, blackLo, blackHi);
+        int phase = min(ONE, contested / FULL_CONTEST);
+
+        return ((ONE - phase / 2) * t1 + phase / 2 * t2) / ONE
+            + phase * (c1 + c2) / (4 * ONE)
+            + phase * mobility * MOBILITY / ONE;
+    }
+
+    @Override
+    public String name() {
+        return "territory";
+    }
+
+    /** Return the value to White of a square at distance WHITE from
+     *  White's queens and BLACK from Black's, where TIE is the value of
+     *  a square both reach at once. */
+    private static int owner(int white, int black, int tie) {
+        if (white < black) {
+            return ONE;
+        } else if (white > black) {
+            return -ONE;
+        } else if (white == UNREACHED) {
+            return 0;
+        } else {
+            return tie;
+        }
+    }
+
+    /** Set DIST[s] to the distance of each empty square s from the
+     *  nearest queen in the mask LO, HI, moving as a queen iff QUEEN
+     *  and as a king otherwise, or UNREACHED.  The search proceeds a
+     *  level at a time, each level's squares found by shifting the
+     *  previous level's mask (see SquareMask.shiftLo).  A queen step
+     *  stops at a square reached in fewer moves, since that square's own
+     *  steps cover the rest of its line.  _emptyLo and _emptyHi must be
+     *  current. */
+    private void distances(long lo, long hi, boolean queen, byte[] dist) {
+        Arrays.fill(dist, (byte) UNREACHED);
+        long seenLo = lo, seenHi = hi, frontLo = lo, frontHi = hi;
+        for (int d = 1; (frontLo | frontHi) != 0; d += 1) {
+            long nextLo, nextHi;
+            nextLo = nextHi = 0;
+            for (int dir = 0; dir < 8; dir += 1) {
+                long rayLo = frontLo, rayHi = frontHi;
+                do {
+                    long stepLo = shiftLo(rayLo, rayHi, dir) & _emptyLo,
+                        stepHi = shiftHi(rayLo, rayHi, dir) & _emptyHi;
+                    rayLo = stepLo & ~seenLo;
+                    rayHi = stepHi & ~seenHi;
+                    nextLo |= rayLo;
+                    nextHi |= rayHi;
+                } while (queen && (rayLo | rayHi) != 0);
+            }
+            frontLo = nextLo;
+            frontHi = nextHi;
+            seenLo |= nextLo;
+            seenHi |= nextHi;
+            for (int k = first(nextLo, nextHi); k >= 0;
+                 k = first(nextLo, nextHi)) {
+                dist[k] = (byte) d;
+                nextLo &= ~SquareMask.lo(k);
+                nextHi &= ~SquareMask.hi(k);
+            }
+        }
+    }
+
+    /** Return the sum over the queens in the mask LO, HI of their
+     *  numbers of moves on BOARD, each at most MOBILITY_CAP. */
+    private static int mobility(Board board, long lo, long hi) {
+        ReachCounts counts = board.counts();
+        int total = 0;
+        for (int k = first(lo, hi); k >= 0; k = first(lo, hi)) {
+            total += min(counts.reach(k), MOBILITY_CAP);
+            lo &= ~SquareMask.lo(k);
+            hi &= ~SquareMask.hi(k);
+        }
+        return total;
+    }
+
+    /** POWER[d] is ONE * 2**-d, rounded down (so 0 for UNREACHED). */
+    private static final int[] POWER = new int[UNREACHED + 1];
+
+    /** CLIPPED[UNREACHED + k] is ONE * k / 6, clipped to +/-ONE, for
+     *  -UNREACHED <= k <= UNREACHED. */
+    private static final int[] CLIPPED = new int[2 * UNREACHED + 1];
+
+    static {
+        for (int d = 0; d < 31; d += 1) {
+            POWER[d] = ONE >> d;
+        }
+        for (int k = -UNREACHED; k <= UNREACHED; k += 1) {
+            CLIPPED[UNREACHED + k] = max(-ONE, min(ONE, k * ONE / 6));
+        }
+    }
+
+    /** The empty squares of the position being scored. */
+    private long _emptyLo, _emptyHi;
+
+    /** Queen and king distances from each side's queens. */
+    private final byte[] _queenWhite = new byte[SQUARES],
+        _queenBlack = new byte[SQUARES],
+        _kingWhite = new byte[SQUARES],
+        _kingBlack = new byte[SQUARES];
+}
@@ -21,4 +21,11 @@ class TextReporter implements Reporter {
     public void reportMove(Move move) {
         System.out.printf("* %s%n", move);
     }
+
+    /** Prints STATS on a line beginning "info", which, not beginning
+     *  with "*", is ignored by referees. */
+    @Override
+    public void reportInfo(SearchStats stats) {
+        System.out.printf("info %s%n", stats);
+    }
 }
@@ -0,0 +1,422 @@
+package amazons;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static amazons.Piece.*;
+
+import ucb.util.CommandArgs;
+
+/** A program that plays games between two configurations of automated
+ *  players within one process, several games at a time, and reports how
+ *  often the first beats the second.  It plays either a fixed number of
+ *  games, or until a sequential probability ratio test (see Sprt)
+ *  decides whether the first is stronger (or, failing that, a limit on
+ *  the number of games is reached).  A configuration is a list of
+ *  Controller commands, separated by semicolons, that set up the
+ *  controller of its player: for example, "engine mcts; playouts 5000"
+ *  or "eval mobility; time 0.1 10".  Each game has a pair of
+ *  Controllers of its own, one for each configuration, whose boards
+ *  follow the game, and whose random numbers are seeded from the
+ *  game's number, so that a tournament may be repeated.  Games are
+ *  played in pairs that start with the same few random moves, with the
+ *  configurations' colors swapped, so that neither is favored by the
+ *  openings it is dealt.
+ *  @author Zhenkai Han
+ */
+public class Tournament {
+
+    /** Default number of games. */
+    static final int DEFAULT_GAMES = 100;
+
+    /** Default limit on the number of games of a sequential test. */
+    static final int DEFAULT_SPRT_GAMES = 20000;
+
+    /** Default number of random moves that start each game. */
+    static final int DEFAULT_OPENING = 2;
+
+    /** Default error rates of sequential tests. */
+    static final double DEFAULT_ALPHA = 0.05, DEFAULT_BETA = 0.05;
+
+    /** The normal deviate for 95% confidence. */
+    private static final double Z95 = 1.96;
+
+    /** Play a tournament as ARGS direct (see usage). */
+    public static void main(String... args) {
+        CommandArgs options =
+            new CommandArgs("--games={0,1} --threads={0,1} --seed={0,1}"
+                            + " --opening={0,1} --results={0,1}"
+                            + " --sprt={0,1} --alpha={0,1} --beta={0,1}"
+                            + " --={2}", args);
+        if (!options.ok()) {
+            usage();
+        }
+        int games = DEFAULT_GAMES, opening = DEFAULT_OPENING,
+            threads = Runtime.getRuntime().availableProcessors();
+        long seed = 0;
+        try {
+            if (options.contains("--games")) {
+                games = Integer.parseInt(options.getFirst("--games"));
+            }
+            if (options.contains("--threads")) {
+                threads = Integer.parseInt(options.getFirst("--threads"));
+            }
+            if (options.contains("--opening")) {
+                opening = Integer.parseInt(options.getFirst("--opening"));
+            }
+            if (options.contains("--seed")) {
+                seed = Long.parseLong(options.getFirst("--seed"));
+            }
+        } catch (NumberFormatException excp) {
+            usage();
+        }
+        if (games < 1 || threads < 1 || opening < 0) {
+            usage();
+        }
+        Sprt sprt = sprt(options);
+        if (sprt != null && !options.contains("--games")) {
+            games = DEFAULT_SPRT_GAMES;
+        }
+
+        List<String> configs = options.get("--");
+        Tournament tournament = null;
+        try {
+            tournament = new Tournament(configs.get(0), configs.get(1),
+                                        opening, seed);
+        } catch (IllegalArgumentException excp) {
+            System.err.printf("Bad configuration: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+        PrintStream results = null;
+        if (options.contains("--results")) {
+            try {
+                results = new PrintStream(options.getFirst("--results"));
+            } catch (FileNotFoundException excp) {
+                System.err.printf("Could not open results file: %s%n",
+                                  excp.getMessage());
+                System.exit(1);
+            }
+        }
+        try {
+            List<Game> played =
+                tournament.run(games, threads, sprt, System.out);
+            if (results != null) {
+                writeResults(played, results);
+                results.close();
+            }
+            report(played, System.out);
+            if (sprt != null) {
+                System.out.printf("SPRT: %s after %d pairs (LLR %.2f,"
+                                  + " bounds %.2f, %.2f)%n",
+                                  !sprt.done() ? "no decision"
+                                  : sprt.acceptedH1() ? "H1 accepted"
+                                  : "H0 accepted",
+                                  sprt.pairs(), sprt.llr(), sprt.lower(),
+                                  sprt.upper());
+            }
+        } catch (IllegalStateException excp) {
+            System.err.printf("Internal error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Print a usage message and exit. */
+    private static void usage() {
+        System.err.println("Usage: java amazons.Tournament [--games=N]"
+                           + " [--threads=N] [--seed=N] [--opening=PLIES]"
+                           + " [--results=FILE] [--sprt=ELO0,ELO1"
+                           + " [--alpha=P] [--beta=P]] FIRST SECOND");
+        System.exit(1);
+    }
+
+    /** Return the sequential test given by the options --sprt, --alpha,
+     *  and --beta in OPTIONS, or null if there is none. */
+    private static Sprt sprt(CommandArgs options) {
+        if (!options.contains("--sprt")) {
+            if (options.contains("--alpha") || options.contains("--beta")) {
+                usage();
+            }
+            return null;
+        }
+        try {
+            String[] bounds = options.getFirst("--sprt").split(",");
+            if (bounds.length != 2) {
+                usage();
+            }
+            double alpha = DEFAULT_ALPHA, beta = DEFAULT_BETA;
+            if (options.contains("--alpha")) {
+                alpha = Double.parseDouble(options.getFirst("--alpha"));
+            }
+            if (options.contains("--beta")) {
+                beta = Double.parseDouble(options.getFirst("--beta"));
+            }
+            return new Sprt(Double.parseDouble(bounds[0]),
+                            Double.parseDouble(bounds[1]), alpha, beta);
+        } catch (IllegalArgumentException excp) {
+            usage();
+            return null;
+        }
+    }
+
+    /** A tournament between the configurations FIRST and SECOND (see
+     *  above), in which each game starts with OPENING random moves, and
+     *  random numbers are seeded from SEED.  Raises an
+     *  IllegalArgumentException if either configuration is invalid. */
+    Tournament(String first, String second, int opening, long seed) {
+        _configs = new String[][] { first.split(";"), second.split(";") };
+        _opening = opening;
+        _seed = seed;
+        controller(0, 0);
+        controller(1, 0);
+    }
+
+    /** Play games 0 .. GAMES - 1, THREADS at a time, and return them in
+     *  order. */
+    List<Game> run(int games, int threads) {
+        return run(games, threads, null, null);
+    }
+
+    /** Play games 0 .. GAMES - 1, THREADS at a time, and return those
+     *  finished, in order.  If SPRT is not null, record in it each pair
+     *  of games (see play) as soon as both have finished, reporting its
+     *  progress on PROGRESS if that is not null, and stop as soon as the
+     *  test ends, abandoning the games in progress. */
+    List<Game> run(int games, int threads, Sprt sprt, PrintStream progress) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<Game> finishing =
+            new ExecutorCompletionService<>(pool);
+        TreeMap<Integer, Game> finished = new TreeMap<>();
+        try {
+            int started = 0, running = 0;
+            while (sprt == null || !sprt.done()) {
+                for (; running < threads && started < games; started += 1) {
+                    final int number = started;
+                    finishing.submit(() -> play(number));
+                    running += 1;
+                }
+                if (running == 0) {
+                    break;
+                }
+                Game game = next(finishing);
+                running -= 1;
+                finished.put(game.number, game);
+                Game partner = finished.get(game.number ^ 1);
+                if (sprt != null && partner != null) {
+                    sprt.addPair((game.firstWon ? 1 : 0)
+                                 + (partner.firstWon ? 1 : 0));
+                    if (progress != null) {
+                        progress.printf("Pair %d: LLR %.2f (%.2f, %.2f)%n",
+                                        sprt.pairs(), sprt.llr(),
+                                        sprt.lower(), sprt.upper());
+                    }
+                }
+            }
+            return new ArrayList<>(finished.values());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Play the game numbered NUMBER and return its record.  In
+     *  even-numbered games, the first configuration plays White; games
+     *  2k and 2k + 1 form a pair, starting with the same opening moves.
+     *  Returns null if this thread is interrupted before the game
+     *  ends. */
+    Game play(int number) {
+        Game game = new Game(number, number % 2 == 0);
+        Controller[] controllers = { controller(0, number),
+                                     controller(1, number) };
+        Player[] players = new Player[2];
+        for (int k = 0; k < 2; k += 1) {
+            Piece side = (k == 0) == game.firstWhite ? WHITE : BLACK;
+            players[k] =
+                controllers[k].autoPlayerTemplate().create(side,
+                                                           controllers[k]);
+        }
+        Board board = controllers[0].board();
+        Random random = new Random(_seed + number / 2);
+        int[] moves = new int[Board.MAX_MOVES];
+        for (int k = 0; k < _opening && board.winner() == null; k += 1) {
+            int n = board.legalMoves(board.turn(), moves);
+            String move = Move.mv(moves[random.nextInt(n)]).toString();
+            for (Controller controller : controllers) {
+                controller.executeCommand(move);
+            }
+        }
+        while (board.winner() == null
+               && !Thread.currentThread().isInterrupted()) {
+            int k = (board.turn() == WHITE) == game.firstWhite ? 0 : 1;
+            long start = System.nanoTime();
+            String move = players[k].myMove();
+            game.nanos[k] += System.nanoTime() - start;
+            game.nodes[k] += players[k].nodes();
+            game.moves[k] += 1;
+            Move mv = Move.mv(move);
+            if (mv == null || !board.isLegal(mv)) {
+                throw new IllegalStateException(
+                    String.format("game %d: bad move from %s player: %s",
+                                  number, k == 0 ? "first" : "second", move));
+            }
+            for (Controller controller : controllers) {
+                controller.executeCommand(move);
+            }
+        }
+        for (Player player : players) {
+            player.cancel();
+        }
+        if (board.winner() == null) {
+            return null;
+        }
+        game.firstWon = (board.winner() == WHITE) == game.firstWhite;
+        game.plies = board.numMoves();
+        return game;
+    }
+
+    /** Return a new Controller set up by configuration K for the game
+     *  numbered NUMBER. */
+    private Controller controller(int k, int number) {
+        Controller controller =
+            new Controller(new NullView(), null, QUIET, new TextPlayer(),
+                           new AI());
+        controller.setSeed(_seed ^ ((long) number << 1 | k));
+        for (String command : _configs[k]) {
+            controller.executeCommand(command);
+        }
+        return controller;
+    }
+
+    /** Return the next Game that FINISHING completes, waiting for it if
+     *  need be.  A game that failed raises an IllegalStateException. */
+    private static Game next(CompletionService<Game> finishing) {
+        while (true) {
+            try {
+                return finishing.take().get();
+            } catch (InterruptedException excp) {
+                /* Keep waiting. */
+            } catch (ExecutionException excp) {
+                throw new IllegalStateException(excp.getCause());
+            }
+        }
+    }
+
+    /** Print a line for each game in GAMES on OUT, after a header naming
+     *  its fields, separated by commas. */
+    static void writeResults(List<Game> games, PrintStream out) {
+        out.println("game,first,winner,plies,first_ms,first_nodes,"
+                    + "second_ms,second_nodes");
+        for (Game game : games) {
+            out.printf("%d,%s,%s,%d,%d,%d,%d,%d%n", game.number,
+                       game.firstWhite ? "white" : "black",
+                       game.firstWon ? "first" : "second", game.plies,
+                       game.nanos[0] / 1000000, game.nodes[0],
+                       game.nanos[1] / 1000000, game.nodes[1]);
+        }
+    }
+
+    /** Print a summary of GAMES on OUT: the first configuration's score,
+     *  with a 95% confidence interval, the Elo difference that it
+     *  implies, and each configuration's average time per move and
+     *  speed. */
+    static void report(List<Game> games, PrintStream out) {
+        int n = games.size(), wins = 0, moves0 = 0, moves1 = 0;
+        long nanos0 = 0, nanos1 = 0, nodes0 = 0, nodes1 = 0;
+        for (Game game : games) {
+            wins += game.firstWon ? 1 : 0;
+            moves0 += game.moves[0];
+            moves1 += game.moves[1];
+            nanos0 += game.nanos[0];
+            nanos1 += game.nanos[1];
+            nodes0 += game.nodes[0];
+            nodes1 += game.nodes[1];
+        }
+        double score = (double) wins / n,
+            margin = Z95 * Math.sqrt(score * (1 - score) / n);
+        out.printf("Games: %d (first %d, second %d)%n", n, wins, n - wins);
+        out.printf("First scores %.1f%% +/- %.1f%% (95%% confidence)",
+                   100 * score, 100 * margin);
+        if (wins > 0 && wins < n) {
+            out.printf(", Elo difference %+.0f", elo(score) + 0.0);
+        }
+        out.println();
+        out.printf("First: %.1f ms/move, %.0f nodes/s%n",
+                   moves0 == 0 ? 0.0 : nanos0 / 1e6 / moves0,
+                   nanos0 == 0 ? 0.0 : nodes0 * 1e9 / nanos0);
+        out.printf("Second: %.1f ms/move, %.0f nodes/s%n",
+                   moves1 == 0 ? 0.0 : nanos1 / 1e6 / moves1,
+                   nanos1 == 0 ? 0.0 : nodes1 * 1e9 / nanos1);
+    }
+
+    /** Return the Elo rating difference implied by a score of
+     *  0 < SCORE < 1. */
+    static double elo(double score) {
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /** The record of one game.  Arrays are indexed by configuration: 0
+     *  for the first and 1 for the second. */
+    static final class Game {
+        /** The record of game NUMBER, in which the first configuration
+         *  plays White iff FIRSTWHITE. */
+        Game(int number, boolean firstWhite) {
+            this.number = number;
+            this.firstWhite = firstWhite;
+        }
+
+        /** The game's number. */
+        final int number;
+        /** True iff the first configuration played White. */
+        final boolean firstWhite;
+        /** True iff the first configuration won. */
+        boolean firstWon;
+        /** Number of moves in the game, including the opening. */
+        int plies;
+        /** Number of moves chosen by each configuration. */
+        final int[] moves = new int[2];
+        /** Time, in nanoseconds, each configuration spent choosing
+         *  moves. */
+        final long[] nanos = new long[2];
+        /** Number of positions each configuration examined. */
+        final long[] nodes = new long[2];
+    }
+
+    /** A Reporter for players in tournament games, which reports only
+     *  errors. */
+    static final Reporter QUIET = new Reporter() {
+        @Override
+        public void reportError(String format, Object... args) {
+            System.err.printf(format, args);
+            System.err.println();
+        }
+
+        @Override
+        public void reportNote(String format, Object... args) {
+        }
+
+        @Override
+        public void reportMove(Move move) {
+        }
+
+        @Override
+        public void reportInfo(SearchStats stats) {
+        }
+    };
+
+    /** The two configurations' commands. */
+    private final String[][] _configs;
+
+    /** Number of random moves that start each game. */
+    private final int _opening;
+
+    /** Seed for random numbers. */
+    private final long _seed;
+
+}
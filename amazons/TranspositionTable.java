@@ -0,0 +1,247 @@
+package amazons;
+
+import java.util.Arrays;
+
+/** A fixed-size cache of search results, indexed by Zobrist key (see
+ *  Board.key).  Each entry records the depth to which a position was
+ *  searched, the kind of bound its score is, the score, and the best
+ *  move found (packed, as for Move.pack), all packed into one long (see
+ *  probe), together with the position's key.  Entries are kept in
+ *  parallel primitive arrays rather than as objects.
+ *
+ *  The table is divided into buckets of two entries.  The first entry of
+ *  a bucket is replaced only by a search at least as deep as the one it
+ *  holds (depth-preferred); the second is replaced by anything that does
+ *  not go into the first (always-replace).
+ *
+ *  Several searching threads may share one table without locking.  The
+ *  key of each entry is stored XORed with its data, so that an entry torn
+ *  by two simultaneous stores no longer matches either key and reads as
+ *  missing.  Statistics are not synchronized, and are only approximate
+ *  when the table is shared.
+ *  @author Zhenkai Han
+ */
+class TranspositionTable {
+
+    /** Bound type: the score is the exact value of the position. */
+    static final int EXACT = 0;
+    /** Bound type: the score is a lower bound (the search failed high). */
+    static final int LOWER = 1;
+    /** Bound type: the score is an upper bound (the search failed low). */
+    static final int UPPER = 2;
+
+    /** Value of move() for an entry with no best move. */
+    static final int NO_MOVE = -1;
+
+    /** Value of probe() for a key with no entry. */
+    static final long MISSING = -1L;
+
+    /** Number of bytes of storage taken by each entry. */
+    static final int BYTES_PER_ENTRY = 8 + 8;
+
+    /** A table with 2**LOGSIZE entries (LOGSIZE >= 1). */
+    TranspositionTable(int logSize) {
+        int size = 1 << logSize;
+        _mask = size - 1;
+        _checks = new long[size];
+        _data = new long[size];
+    }
+
+    /** Return a table with the largest power-of-two number of entries
+     *  that fits in MEGABYTES megabytes. */
+    static TranspositionTable ofMegabytes(int megabytes) {
+        long entries = ((long) megabytes << 20) / BYTES_PER_ENTRY;
+        int logSize = 1;
+        while (logSize < 30 && (2L << logSize) <= entries) {
+            logSize += 1;
+        }
+        return new TranspositionTable(logSize);
+    }
+
+    /** Return the number of entries in the table. */
+    int size() {
+        return _data.length;
+    }
+
+    /** Return the approximate number of bytes occupied by the table. */
+    long bytes() {
+        return (long) size() * BYTES_PER_ENTRY;
+    }
+
+    /** Remove all entries (but not the statistics). */
+    void clear() {
+        Arrays.fill(_checks, 0);
+        Arrays.fill(_data, 0);
+    }
+
+    /** Return the entry for KEY, or MISSING if there is none.  The
+     *  entry is a copy, which the accessors depth, bound, score, and
+     *  move take apart, and so is not disturbed by later stores.  Counts
+     *  as a hit or a miss. */
+    long probe(long key) {
+        _probes += 1;
+        int slot = bucket(key);
+        long entry = _data[slot];
+        if (matches(key, _checks[slot], entry)) {
+            _hits += 1;
+            return entry;
+        }
+        slot += 1;
+        entry = _data[slot];
+        if (matches(key, _checks[slot], entry)) {
+            _hits += 1;
+            return entry;
+        }
+        return MISSING;
+    }
+
+    /** Return the search depth recorded in ENTRY. */
+    static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    /** Return the bound type (EXACT, LOWER, or UPPER) of ENTRY. */
+    static int bound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    /** Return the score recorded in ENTRY. */
+    static int score(long entry) {
+        return (int) entry;
+    }
+
+    /** Return the packed best move recorded in ENTRY, or NO_MOVE. */
+    static int move(long entry) {
+        int move = (int) (entry >>> MOVE_SHIFT) & MOVE_MASK;
+        return move == MOVE_MASK ? NO_MOVE : move;
+    }
+
+    /** Record that position KEY was searched to DEPTH, giving SCORE, a
+     *  bound of type BOUND, with best move MOVE (packed, or NO_MOVE). */
+    void store(long key, int depth, int bound, int score, int move) {
+        _stores += 1;
+        int first = bucket(key), second = first + 1;
+        long old1 = _data[first], old2 = _data[second];
+        boolean inFirst = matches(key, _checks[first], old1),
+            inSecond = matches(key, _checks[second], old2);
+        if (move == NO_MOVE && (inFirst || inSecond)) {
+            move = move(inFirst ? old1 : old2);
+        }
+        int slot;
+        if (inFirst || (old1 & USED) == 0 || depth >= depth(old1)) {
+            slot = first;
+            if (inSecond) {
+                _data[second] = _checks[second] = 0;
+            }
+        } else {
+            slot = second;
+        }
+        long entry = USED
+            | (long) Math.min(depth, DEPTH_MASK) << DEPTH_SHIFT
+            | (long) bound << BOUND_SHIFT
+            | (long) (move & MOVE_MASK) << MOVE_SHIFT
+            | (score & 0xffffffffL);
+        _data[slot] = entry;
+        _checks[slot] = key ^ entry;
+    }
+
+    /** Note that a probe of this table let the search return without
+     *  searching the position. */
+    void recordCutoff() {
+        _cutoffs += 1;
+    }
+
+    /** Return the number of probes since the last resetStatistics. */
+    long probes() {
+        return _probes;
+    }
+
+    /** Return the number of probes that found an entry. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Return the number of probes that found no entry. */
+    long misses() {
+        return _probes - _hits;
+    }
+
+    /** Return the number of probes that ended the search of a node. */
+    long cutoffs() {
+        return _cutoffs;
+    }
+
+    /** Return the number of stores since the last resetStatistics. */
+    long stores() {
+        return _stores;
+    }
+
+    /** Return the fraction of probes that found an entry. */
+    double hitRate() {
+        return _probes == 0 ? 0.0 : (double) _hits / _probes;
+    }
+
+    /** Return the fraction of probes that ended the search of a node. */
+    double cutoffRate() {
+        return _probes == 0 ? 0.0 : (double) _cutoffs / _probes;
+    }
+
+    /** Return the fraction of entries in use. */
+    double fill() {
+        int used;
+        used = 0;
+        for (long entry : _data) {
+            if ((entry & USED) != 0) {
+                used += 1;
+            }
+        }
+        return (double) used / size();
+    }
+
+    /** Set all statistics to 0. */
+    void resetStatistics() {
+        _probes = _hits = _cutoffs = _stores = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("tt %d entries %.1fMB probes %d hit %.3f "
+                             + "cutoff %.3f", size(), bytes() / 1048576.0,
+                             _probes, hitRate(), cutoffRate());
+    }
+
+    /** Return the first entry number of KEY's bucket. */
+    private int bucket(long key) {
+        return (int) (key ^ (key >>> 32)) & _mask & ~1;
+    }
+
+    /** Return true iff ENTRY, stored with check word CHECK, is an entry
+     *  for KEY. */
+    private static boolean matches(long key, long check, long entry) {
+        return (entry & USED) != 0 && (check ^ entry) == key;
+    }
+
+    /** Layout of an entry: the score in bits 0-31, the move in the next
+     *  3 * Move.PACK_BITS bits (all ones for NO_MOVE), then the depth,
+     *  the bound type, and a bit that is set in every entry in use. */
+    private static final int
+        MOVE_SHIFT = 32,
+        MOVE_MASK = (1 << (3 * Move.PACK_BITS)) - 1,
+        DEPTH_SHIFT = MOVE_SHIFT + 3 * Move.PACK_BITS,
+        DEPTH_MASK = (1 << 7) - 1,
+        BOUND_SHIFT = DEPTH_SHIFT + 7,
+        BOUND_MASK = 3;
+
+    /** The bit set in entries in use. */
+    private static final long USED = 1L << (BOUND_SHIFT + 2);
+
+    /** Mask selecting an entry number from a hash. */
+    private final int _mask;
+    /** Keys of the entries, each XORed with the entry's data. */
+    private final long[] _checks;
+    /** Packed depths, bound types, scores, and moves of the entries. */
+    private final long[] _data;
+
+    /** Statistics: numbers of probes, hits, cutoffs, and stores. */
+    private long _probes, _hits, _cutoffs, _stores;
+}
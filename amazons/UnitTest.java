@@ -4,7 +4,12 @@ import org.junit.Test;
 import static org.junit.Assert.*;
 import ucb.junit.textui;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 
 /** The suite of all JUnit tests for the enigma package.
  *  @author Zhenkai Han
@@ -149,6 +154,35 @@ public class UnitTest {
         assertEquals("sq one str", Square.sq(9, 9), Square.sq("j10"));
     }
 
+    @Test
+    public void squareTableTest() {
+        Square a = Square.sq("c3");
+        assertEquals("ray!", 7, a.ray(1).length);
+        assertEquals("ray!", Square.sq("d4"), a.ray(1)[0]);
+        assertEquals("ray!", Square.sq("j10"), a.ray(1)[6]);
+        assertEquals("ray!", 2, a.ray(4).length);
+        assertEquals("ray!", 0, Square.sq("a1").ray(6).length);
+        assertTrue("exists!", a.existsMove(6, 2));
+        assertFalse("exists!", a.existsMove(6, 3));
+        assertEquals("queenMove!", null, a.queenMove(6, 3));
+        assertEquals("between!", 0L, a.betweenLo(Square.sq("d4")));
+        assertEquals("between!", SquareMask.lo(Square.sq("d4"))
+                     | SquareMask.lo(Square.sq("e5")),
+                     a.betweenLo(Square.sq("f6")));
+        assertEquals("between!", SquareMask.hi(Square.sq("c8")),
+                     a.betweenHi(Square.sq("c9")));
+        for (Square from : Square.SQUARES) {
+            for (Square to : Square.SQUARES) {
+                int dCol = to.col() - from.col(),
+                    dRow = to.row() - from.row();
+                boolean queen = from != to
+                    && (dCol == 0 || dRow == 0
+                        || Math.abs(dCol) == Math.abs(dRow));
+                assertEquals("isQueenMove!", queen, from.isQueenMove(to));
+            }
+        }
+    }
+
     @Test
     public void boardWinnerTest() {
         Board b = new Board();
@@ -255,8 +289,8 @@ public class UnitTest {
     @Test
     public void boardSingleSquareIteratorTest() {
         Board b = new Board();
-        b.getPiece().put(Square.sq("e1"), Piece.SPEAR);
-        b.getPiece().put(Square.sq("b1"), Piece.BLACK);
+        b.put(Piece.SPEAR, Square.sq("e1"));
+        b.put(Piece.BLACK, Square.sq("b1"));
         Iterator d1 = b.reachableFrom(Square.sq("d1"), null);
         assertEquals("Reachable iterator!", Square.sq("d2"), d1.next());
         assertEquals("Reachable iterator!", Square.sq("d3"), d1.next());
@@ -277,24 +311,54 @@ public class UnitTest {
         assertFalse("Reachable iterator!", d1.hasNext());
     }
 
+    @Test
+    public void boardBulkReachableTest() {
+        Board b = new Board();
+        b.put(Piece.SPEAR, Square.sq("e1"));
+        b.put(Piece.BLACK, Square.sq("b1"));
+        short[] squares = new short[Board.MAX_REACH];
+        long[] mask = new long[2];
+        int n = b.reachableFrom(Square.sq("d1"), null, squares);
+        assertEquals("bulk reachable!", 16, n);
+        assertEquals("bulk reachable!", Square.sq("d2").index(), squares[0]);
+        assertEquals("bulk reachable!", Square.sq("b3").index(),
+                     squares[n - 1]);
+        assertEquals("bulk reachable!", 18,
+                     b.reachableFrom(Square.sq("d1"), Square.sq("e1"),
+                                     squares));
+        for (Square s : Square.SQUARES) {
+            n = b.reachableFrom(s, Square.sq("a4"), squares);
+            b.reachable(s, Square.sq("a4"), mask);
+            assertEquals("bulk reachable!", Long.bitCount(mask[0])
+                         + Long.bitCount(mask[1]), n);
+            for (int i = 0; i < n; i += 1) {
+                assertTrue("bulk reachable!",
+                           SquareMask.contains(mask[0], mask[1],
+                                               squares[i]));
+            }
+        }
+        assertEquals("bulk reachable!", Board.MAX_REACH,
+                     new Board().reachableFrom(Square.sq("e5"), null,
+                                               squares));
+    }
+
     @Test
     public void boardSideSquaresIteratorTest() {
         Board b = new Board();
-        b.getPiece().remove(Square.sq("a10"));
-        b.getPiece().put(Square.sq("a10"), Piece.SPEAR);
-        b.getPiece().put(Square.sq("b10"), Piece.SPEAR);
-        b.getPiece().put(Square.sq("b9"), Piece.SPEAR);
-        b.getPiece().put(Square.sq("b8"), Piece.SPEAR);
-        b.getPiece().put(Square.sq("b7"), Piece.SPEAR);
-        b.getPiece().put(Square.sq("b6"), Piece.SPEAR);
-        b.getPiece().put(Square.sq("a6"), Piece.SPEAR);
-        b.getPiece().put(Square.sq("j10"), Piece.SPEAR);
-        b.getPiece().put(Square.sq("i10"), Piece.SPEAR);
-        b.getPiece().put(Square.sq("i9"), Piece.SPEAR);
-        b.getPiece().put(Square.sq("i8"), Piece.SPEAR);
-        b.getPiece().put(Square.sq("i7"), Piece.SPEAR);
-        b.getPiece().put(Square.sq("i6"), Piece.SPEAR);
-        b.getPiece().put(Square.sq("j6"), Piece.SPEAR);
+        b.put(Piece.SPEAR, Square.sq("a10"));
+        b.put(Piece.SPEAR, Square.sq("b10"));
+        b.put(Piece.SPEAR, Square.sq("b9"));
+        b.put(Piece.SPEAR, Square.sq("b8"));
+        b.put(Piece.SPEAR, Square.sq("b7"));
+        b.put(Piece.SPEAR, Square.sq("b6"));
+        b.put(Piece.SPEAR, Square.sq("a6"));
+        b.put(Piece.SPEAR, Square.sq("j10"));
+        b.put(Piece.SPEAR, Square.sq("i10"));
+        b.put(Piece.SPEAR, Square.sq("i9"));
+        b.put(Piece.SPEAR, Square.sq("i8"));
+        b.put(Piece.SPEAR, Square.sq("i7"));
+        b.put(Piece.SPEAR, Square.sq("i6"));
+        b.put(Piece.SPEAR, Square.sq("j6"));
         assertEquals("fffffffff!", Piece.SPEAR, b.get(Square.sq(0, 9)));
         Iterator black = b.legalMoves(Piece.BLACK);
         assertFalse("Unblocked", b.isUnblockedMove(Square.sq("a8"),
@@ -310,6 +374,822 @@ public class UnitTest {
         assertEquals("SS iterator!", Move.mv("d10-e10(f10)"), black.next());
     }
 
+    @Test
+    public void boardMaskTest() {
+        Board b = new Board();
+        assertEquals("queens!", 8, b.queens().size());
+        assertEquals("spears!", 0, b.spears().size());
+        b.put(Piece.EMPTY, Square.sq("a4"));
+        b.put(Piece.SPEAR, Square.sq("j10"));
+        assertEquals("queens!", 7, b.queens().size());
+        assertFalse("queens!", b.queens().contains(Square.sq("a4")));
+        assertEquals("spears!", Square.sq("j10"), b.spears().get(0));
+        for (Square s : new Square[] {
+                Square.sq("c1"), Square.sq("c2"), Square.sq("d2"),
+                Square.sq("e2"), Square.sq("e1"), Square.sq("f1"),
+                Square.sq("f2"), Square.sq("g2"), Square.sq("h2"),
+                Square.sq("h1"), Square.sq("i4"), Square.sq("i3"),
+                Square.sq("j3") }) {
+            b.put(Piece.SPEAR, s);
+        }
+        assertEquals("winner!", null, b.winner());
+        b.put(Piece.SPEAR, Square.sq("j5"));
+        b.put(Piece.SPEAR, Square.sq("i5"));
+        assertTrue("no move!", b.hasNoMove(Piece.WHITE));
+        assertFalse("no move!", b.hasNoMove(Piece.BLACK));
+        assertEquals("winner!", Piece.BLACK, b.winner());
+    }
+
+    @Test
+    public void packedLegalMovesTest() {
+        Board b = new Board();
+        int[] moves = new int[Board.MAX_MOVES];
+        assertEquals("initial moves!", 2176,
+                b.legalMoves(Piece.WHITE, moves));
+        b.makeMove(Move.mv("d1-d9(g9)"));
+        b.makeMove(Move.mv("g10-b5(b4)"));
+        b.makeMove(Move.mv("d9-b7(d9)"));
+        for (Piece side : new Piece[] { Piece.WHITE, Piece.BLACK }) {
+            java.util.HashSet<Move> expected = new java.util.HashSet<>();
+            Iterator<Move> iter = b.legalMoves(side);
+            while (iter.hasNext()) {
+                expected.add(iter.next());
+            }
+            int n = b.legalMoves(side, moves);
+            assertEquals("packed moves!", expected.size(), n);
+            for (int i = 0; i < n; i += 1) {
+                assertTrue("packed moves!",
+                           expected.contains(Move.mv(moves[i])));
+            }
+        }
+        Move m = Move.mv("a7-a5(a7)");
+        assertEquals("packed!", m, Move.mv(m.packed()));
+        b.makeMove(m.packed());
+        assertEquals("packed!", Piece.SPEAR, b.get(Square.sq("a7")));
+        assertEquals("packed!", Piece.BLACK, b.get(Square.sq("a5")));
+        b.undo();
+        assertEquals("packed!", Piece.BLACK, b.get(Square.sq("a7")));
+        assertEquals("packed!", Piece.EMPTY, b.get(Square.sq("a5")));
+    }
+
+    @Test
+    public void zobristKeyTest() {
+        Random rand = new Random(61);
+        int[] moves = new int[Board.MAX_MOVES];
+        for (int game = 0; game < 20; game += 1) {
+            Board b = new Board();
+            long initialKey = b.key();
+            assertEquals("zobrist!", b.computeKey(), initialKey);
+            while (b.winner() == null) {
+                if (b.numMoves() > 0 && rand.nextInt(4) == 0) {
+                    b.undo();
+                } else {
+                    int n = b.legalMoves(b.turn(), moves);
+                    b.makeMove(moves[rand.nextInt(n)]);
+                }
+                assertEquals("zobrist!", b.computeKey(), b.key());
+                assertEquals("zobrist!", b.key(), new Board(b).key());
+            }
+            b.put(Piece.SPEAR, Square.sq("e5"));
+            b.put(Piece.WHITE, Square.sq("e5"));
+            b.put(Piece.EMPTY, Square.sq("f5"));
+            assertEquals("zobrist!", b.computeKey(), b.key());
+            b.init();
+            assertEquals("zobrist!", initialKey, b.key());
+        }
+        Board b1 = new Board(), b2 = new Board();
+        b1.makeMove(Move.mv("d1-d5(e6)"));
+        b1.makeMove(Move.mv("a7-b7(c7)"));
+        b1.makeMove(Move.mv("g1-g5(f6)"));
+        b2.makeMove(Move.mv("g1-g5(f6)"));
+        b2.makeMove(Move.mv("a7-b7(c7)"));
+        b2.makeMove(Move.mv("d1-d5(e6)"));
+        assertEquals("transposition!", b1.toString(), b2.toString());
+        assertEquals("transposition!", b1.key(), b2.key());
+        b2.undo();
+        assertNotEquals("transposition!", b1.key(), b2.key());
+    }
+
+    @Test
+    public void reachCountsTest() {
+        Random rand = new Random(62);
+        int[] moves = new int[Board.MAX_MOVES];
+        for (int game = 0; game < 20; game += 1) {
+            Board b = new Board();
+            assertEquals("reach!", new ReachCounts(b), b.counts());
+            while (b.winner() == null) {
+                if (b.numMoves() > 0 && rand.nextInt(4) == 0) {
+                    b.undo();
+                } else {
+                    int n = b.legalMoves(b.turn(), moves);
+                    b.makeMove(moves[rand.nextInt(n)]);
+                }
+                assertEquals("reach!", new ReachCounts(b), b.counts());
+                assertEquals("reach copy!", b.counts(),
+                             new Board(b).counts());
+            }
+            assertEquals("reach mobility!", 0, b.counts().mobility(b.turn()));
+            b.put(Piece.SPEAR, Square.sq("e5"));
+            b.put(Piece.WHITE, Square.sq("e5"));
+            b.put(Piece.EMPTY, Square.sq("f5"));
+            assertEquals("reach put!", new ReachCounts(b), b.counts());
+        }
+        Board b = new Board();
+        ReachCounts counts = b.counts();
+        assertEquals("reach ray!", 8, counts.rayReach(3, 0));
+        assertEquals("reach ray!", 5, counts.rayReach(3, 1));
+        assertEquals("reach ray!", 2, counts.rayReach(3, 2));
+        assertEquals("reach ray!", 0, counts.rayReach(3, 4));
+        assertEquals("reach!", 20, counts.reach(3));
+        assertEquals("reach mobility!", 4 * 20, counts.mobility(Piece.WHITE));
+        assertEquals("reach nearby!", 4 * 17, counts.nearby(Piece.BLACK));
+    }
+
+    @Test
+    public void transpositionTableTest() {
+        TranspositionTable table = new TranspositionTable(4);
+        assertEquals("tt size!", 16, table.size());
+        long key = 0x1234_5678_9abcL, other = key + 16, third = key + 32;
+        long missing = TranspositionTable.MISSING;
+        assertEquals("tt miss!", missing, table.probe(key));
+        table.store(key, 3, TranspositionTable.EXACT, 17, 42);
+        long entry = table.probe(key);
+        assertTrue("tt hit!", entry != missing);
+        assertEquals("tt depth!", 3, TranspositionTable.depth(entry));
+        assertEquals("tt bound!", TranspositionTable.EXACT,
+                     TranspositionTable.bound(entry));
+        assertEquals("tt score!", 17, TranspositionTable.score(entry));
+        assertEquals("tt move!", 42, TranspositionTable.move(entry));
+        table.store(other, 1, TranspositionTable.LOWER, -5,
+                    TranspositionTable.NO_MOVE);
+        assertTrue("tt deep entry kept!", table.probe(key) != missing);
+        entry = table.probe(other);
+        assertTrue("tt shallow entry!", entry != missing);
+        assertEquals("tt negative score!", -5,
+                     TranspositionTable.score(entry));
+        assertEquals("tt no move!", TranspositionTable.NO_MOVE,
+                     TranspositionTable.move(entry));
+        table.store(third, 2, TranspositionTable.UPPER, 8, 7);
+        assertTrue("tt deep entry kept!", table.probe(key) != missing);
+        assertEquals("tt always-replace!", missing, table.probe(other));
+        table.store(third, 5, TranspositionTable.EXACT, 9,
+                    TranspositionTable.NO_MOVE);
+        entry = table.probe(third);
+        assertEquals("tt depth-preferred!", 5,
+                     TranspositionTable.depth(entry));
+        assertEquals("tt keeps move!", 7, TranspositionTable.move(entry));
+        assertEquals("tt probes!", 7, table.probes());
+        assertEquals("tt misses!", 2, table.misses());
+        table.clear();
+        assertEquals("tt clear!", missing, table.probe(key));
+    }
+
+    @Test
+    public void territoryEvaluatorTest() {
+        Board b = new Board();
+        for (Square q : b.queens()) {
+            b.put(Piece.EMPTY, q);
+        }
+        b.put(Piece.WHITE, Square.sq("a1"));
+        for (String s : new String[] { "a3", "b3", "b2", "c1", "c2",
+                                       "h10", "h9", "h8", "i8", "j8" }) {
+            b.put(Piece.SPEAR, Square.sq(s));
+        }
+        b.put(Piece.BLACK, Square.sq("j10"));
+        Evaluator eval = Evaluator.forName("territory").create(Piece.WHITE);
+        assertEquals("separated regions!", -TerritoryEvaluator.ONE,
+                     eval.score(b));
+        b.put(Piece.EMPTY, Square.sq("b2"));
+        assertTrue("more territory!", eval.score(b) > 0);
+        assertEquals("names!", "mobility",
+                     Evaluator.forName("mobility").name());
+        Board init = new Board();
+        assertEquals("symmetric start!", 0,
+                     Evaluator.forName("mobility").create(Piece.WHITE)
+                     .score(init)
+                     + Evaluator.forName("mobility").create(Piece.BLACK)
+                     .score(init));
+    }
+
+    @Test
+    public void endgameTest() {
+        Board b = new Board();
+        for (Square q : b.queens()) {
+            b.put(Piece.EMPTY, q);
+        }
+        Endgame endgame = new Endgame();
+        b.put(Piece.WHITE, Square.sq("b2"));
+        b.put(Piece.BLACK, Square.sq("j10"));
+        assertFalse("contested!", endgame.isSeparated(b));
+        for (String s : new String[] { "a2", "b1", "c2", "d1", "d2", "a3",
+                                       "b3", "c3", "i10", "h10", "h9",
+                                       "h8", "i8", "j8" }) {
+            b.put(Piece.SPEAR, Square.sq(s));
+        }
+        assertTrue("separated!", endgame.isSeparated(b));
+        assertTrue("solved!", endgame.solve(b));
+        assertEquals("dead end!", 1, endgame.moves(Piece.WHITE));
+        assertEquals("corner!", 2, endgame.moves(Piece.BLACK));
+        assertEquals("winner!", Piece.BLACK, endgame.winner());
+        b.put(Piece.SPEAR, Square.sq("i9"));
+        assertTrue("solved!", endgame.solve(b));
+        assertEquals("one square!", 1, endgame.moves(Piece.BLACK));
+        assertEquals("to move loses!", Piece.BLACK, endgame.winner());
+        Move best = Move.mv(endgame.bestMove());
+        assertTrue("legal!", b.isLegal(best));
+        b.makeMove(best);
+        assertTrue("solved!", endgame.solve(b));
+        assertEquals("after!", 0, endgame.moves(Piece.WHITE));
+
+        b = new Board();
+        for (int k = 0; k < Board.SIZE * Board.SIZE; k += 1) {
+            b.put(Piece.SPEAR, Square.sq(k));
+        }
+        for (String s : new String[] { "a1", "b1", "b3", "d1" }) {
+            b.put(Piece.EMPTY, Square.sq(s));
+        }
+        b.put(Piece.WHITE, Square.sq("a2"));
+        b.put(Piece.BLACK, Square.sq("c2"));
+        b.makeMove(Move.mv("a2-b1(a2)"));
+        assertFalse("adjacent queens!", endgame.isSeparated(b));
+        assertFalse("adjacent queens!", endgame.solve(b));
+    }
+
+    @Test
+    public void parallelSearchTest() {
+        Board b = new Board();
+        for (String m : new String[] {
+                "d1-d9(g9)", "g10-b5(b4)", "d9-b7(d9)", "a7-a5(c7)",
+                "b7-a8(a6)", "d10-b8(b9)", "g1-b6(b7)", "j7-e2(e10)",
+                "j4-e4(e9)", "b8-a9(b8)", "e4-h4(e4)", "b5-c6(c5)" }) {
+            b.makeMove(Move.mv(m));
+        }
+        AI first = new AI(Piece.WHITE, null),
+            second = new AI(Piece.WHITE, null);
+        int value = first.searchToDepth(b, 2);
+        assertEquals("deterministic value!", value,
+                     second.searchToDepth(b, 2));
+        assertEquals("deterministic move!", first.bestMove(),
+                     second.bestMove());
+        assertEquals("deterministic nodes!", first.nodes(), second.nodes());
+        AI parallel = new AI(Piece.WHITE, null);
+        parallel.setThreads(3);
+        parallel.searchToDepth(b, 2);
+        assertTrue("parallel move!", b.isLegal(parallel.bestMove()));
+        assertTrue("board untouched!", b.numMoves() == 12);
+    }
+
+    @Test
+    public void moveOrderingTest() {
+        Board b = new Board();
+        for (String m : new String[] {
+                "d1-d9(g9)", "g10-b5(b4)", "d9-b7(d9)", "a7-a5(c7)",
+                "b7-a8(a6)", "d10-b8(b9)", "g1-b6(b7)", "j7-e2(e10)",
+                "j4-e4(e9)", "b8-a9(b8)", "e4-h4(e4)", "b5-c6(c5)" }) {
+            b.makeMove(Move.mv(m));
+        }
+        AI plain = new AI(Piece.WHITE, null),
+            ordered = new AI(Piece.WHITE, null);
+        plain.setMoveOrdering(false);
+        int plainValue = plain.searchToDepth(b, 1);
+        int orderedValue = ordered.searchToDepth(b, 1);
+        assertEquals("ordering value!", plainValue, orderedValue);
+        assertTrue("ordering nodes!", ordered.nodes() < plain.nodes());
+        assertTrue("ordering move!", b.isLegal(ordered.bestMove()));
+    }
+
+    @Test
+    public void searchStatsTest() {
+        Board b = new Board();
+        for (String m : new String[] {
+                "d1-d9(g9)", "g10-b5(b4)", "d9-b7(d9)", "a7-a5(c7)",
+                "b7-a8(a6)", "d10-b8(b9)", "g1-b6(b7)", "j7-e2(e10)" }) {
+            b.makeMove(Move.mv(m));
+        }
+        AI ai = new AI(Piece.WHITE, null);
+        ai.searchToDepth(b, 1);
+        SearchStats stats = ai.searchStats();
+        assertEquals("depth!", 1, stats.depth());
+        assertEquals("nodes!", ai.nodes(), stats.nodes());
+        assertTrue("leaves!", stats.leaves() > 0
+                   && stats.leaves() < stats.nodes());
+        assertTrue("cutoffs!", stats.cutoffs() > 0
+                   && stats.firstCutoffs() <= stats.cutoffs());
+        assertTrue("table!", stats.ttProbes() > 0
+                   && stats.ttHits() <= stats.ttProbes()
+                   && stats.ttCutoffs() <= stats.ttHits());
+        assertEquals("branching!", stats.nodes(),
+                     Math.pow(stats.branchingFactor(), 2), 1e-3);
+        assertTrue("time!", stats.nanos() > 0 && stats.nodesPerSecond() > 0);
+
+        SearchStats[] reported = new SearchStats[1];
+        Reporter reporter = new Reporter() {
+            @Override
+            public void reportError(String format, Object... args) {
+            }
+
+            @Override
+            public void reportNote(String format, Object... args) {
+            }
+
+            @Override
+            public void reportMove(Move move) {
+            }
+
+            @Override
+            public void reportInfo(SearchStats info) {
+                reported[0] = info;
+            }
+        };
+        Controller controller =
+            new Controller(new NullView(), null, reporter, new TextPlayer(),
+                           new AI());
+        controller.setTimeLimits(200, 60000);
+        controller.executeCommand("d1-d9(g9)");
+        Player player = new AI().create(Piece.BLACK, controller);
+        player.myMove();
+        assertTrue("reported!", reported[0] != null
+                   && reported[0].nodes() == player.nodes()
+                   && reported[0].nodes() > 0);
+    }
+
+    @Test
+    public void principalVariationTest() {
+        Random rand = new Random(63);
+        int[] moves = new int[Board.MAX_MOVES];
+        Evaluator eval = new TerritoryEvaluator();
+        for (int game = 0; game < 3; game += 1) {
+            Board b = new Board();
+            while (b.winner() == null && b.numMoves() < 70) {
+                if (b.numMoves() >= 40 && b.numMoves() % 10 == 0) {
+                    int depth = b.numMoves() < 60 ? 1 : 2;
+                    AI ai = new AI(b.turn(), null);
+                    int value = ai.searchToDepth(b, depth);
+                    assertEquals("pvs value!", minimax(b, depth, eval),
+                                 value);
+                    b.makeMove(ai.bestMove());
+                    assertEquals("pvs move!", value,
+                                 depth == 0 ? eval.score(b)
+                                 : minimax(b, depth - 1, eval));
+                    b.undo();
+                }
+                int n = b.legalMoves(b.turn(), moves);
+                b.makeMove(moves[rand.nextInt(n)]);
+            }
+        }
+    }
+
+    @Test
+    public void selectivityTest() {
+        assertEquals("off!", Selectivity.NONE, Selectivity.parse("off"));
+        assertFalse("off!", Selectivity.NONE.selective());
+        Selectivity sel = Selectivity.parse("4,1,20,2");
+        assertEquals("parse!", new Selectivity(4, 1, 20, 2), sel);
+        assertEquals("print!", "4,1,20,2", sel.toString());
+        assertEquals("schedule!", 0, sel.reduction(3));
+        assertEquals("schedule!", 1, sel.reduction(4));
+        assertEquals("schedule!", 1, sel.reduction(7));
+        assertEquals("schedule!", 2, sel.reduction(8));
+        assertEquals("schedule!", 3, sel.reduction(16));
+        for (String bad : new String[] { "4,1,20", "4,x,0,0", "4,-1,0,0" }) {
+            try {
+                Selectivity.parse(bad);
+                fail("bad spec!");
+            } catch (IllegalArgumentException excp) {
+                /* Expected. */
+            }
+        }
+
+        Board b = new Board();
+        for (String m : new String[] {
+                "d1-d9(g9)", "g10-b5(b4)", "d9-b7(d9)", "a7-a5(c7)" }) {
+            b.makeMove(Move.mv(m));
+        }
+        AI full = new AI(Piece.WHITE, null),
+            selective = new AI(Piece.WHITE, null);
+        selective.setSelectivity(sel);
+        full.searchToDepth(b, 1);
+        selective.searchToDepth(b, 1);
+        assertTrue("selective nodes!", selective.nodes() < full.nodes() / 4);
+        assertTrue("selective move!", b.isLegal(selective.bestMove()));
+        AI narrow = new AI(Piece.WHITE, null);
+        narrow.setSelectivity(new Selectivity(0, 0, 1, 0));
+        narrow.searchToDepth(b, 2);
+        Move best = narrow.bestMove();
+        int value = Integer.MIN_VALUE;
+        Evaluator eval = new TerritoryEvaluator();
+        for (Iterator<Move> iter = b.legalMoves(); iter.hasNext();) {
+            b.makeMove(iter.next());
+            value = Math.max(value, eval.score(b));
+            b.undo();
+        }
+        b.makeMove(best);
+        assertEquals("width 1 plays best static move!", value, eval.score(b));
+    }
+
+    @Test
+    public void playoutBoardTest() {
+        PlayoutBoard p = new PlayoutBoard(64);
+        for (int game = 0; game < 20; game += 1) {
+            Board b = new Board();
+            p.set(b);
+            int move = p.randomMove();
+            while (move != PlayoutBoard.NO_MOVE) {
+                assertTrue("random move legal!", b.isLegal(Move.mv(move)));
+                b.makeMove(move);
+                p.makeMove(move);
+                assertEquals("turn!", b.turn(), p.turn());
+                for (Square s : Square.SQUARES) {
+                    assertEquals("contents!", b.get(s), p.get(s.index()));
+                }
+                move = p.randomMove();
+            }
+            assertEquals("winner!", b.turn().opponent(), b.winner());
+            p.set(b);
+            assertEquals("playout winner!", b.winner(), p.playout());
+        }
+        Board b = new Board();
+        b.put(Piece.EMPTY, Square.sq("d1"));
+        b.put(Piece.WHITE, Square.sq("e5"));
+        p.set(b);
+        assertTrue("central queen leads!", p.territory() > 0);
+    }
+
+    @Test
+    public void mctsTest() {
+        Board b = new Board();
+        for (String m : new String[] {
+                "d1-d9(g9)", "g10-b5(b4)", "d9-b7(d9)", "a7-a5(c7)" }) {
+            b.makeMove(Move.mv(m));
+        }
+        MCTSPlayer first = new MCTSPlayer(), second = new MCTSPlayer();
+        first.setSeed(5);
+        second.setSeed(5);
+        Move move = first.search(b, 300, Long.MAX_VALUE);
+        assertTrue("mcts move!", b.isLegal(move));
+        assertEquals("playouts!", 300, first.playouts());
+        assertEquals("deterministic!", move,
+                     second.search(b, 300, Long.MAX_VALUE));
+        assertEquals("board untouched!", 4, b.numMoves());
+        first.search(b, 200, Long.MAX_VALUE);
+        assertEquals("tree kept!", 500, first.rootVisits());
+        b.makeMove(move);
+        first.search(b, 100, Long.MAX_VALUE);
+        assertTrue("subtree kept!", first.rootVisits() > 100);
+        b.undo();
+        b.undo();
+        first.search(b, 100, Long.MAX_VALUE);
+        assertEquals("tree dropped!", 100, first.rootVisits());
+        MCTSPlayer parallel = new MCTSPlayer();
+        parallel.setThreads(3);
+        assertTrue("parallel move!",
+                   b.isLegal(parallel.search(b, 2000, Long.MAX_VALUE)));
+        assertEquals("parallel playouts!", 2000, parallel.playouts());
+        assertEquals("parallel visits!", 2000, parallel.rootVisits());
+    }
+
+    /** Test pondering: on a hit, the move found is returned; on a miss,
+     *  or after cancel, nothing is. */
+    @Test
+    public void ponderTest() throws InterruptedException {
+        Board b = new Board();
+        AI ai = new AI();
+        assertNull("no table yet!", ai.startPondering(b));
+        ai.searchToDepth(b, 1);
+        b.makeMove(ai.bestMove());
+        Move reply = ai.startPondering(b);
+        assertTrue("predicted!", reply != null && b.isLegal(reply));
+        assertEquals("board untouched!", 1, b.numMoves());
+        Thread.sleep(200);
+        b.makeMove(reply);
+        Move pondered = ai.stopPondering(b);
+        assertTrue("hit!", pondered != null && b.isLegal(pondered));
+        assertNull("stopped!", ai.stopPondering(b));
+        b.undo();
+        assertEquals("same prediction!", reply, ai.startPondering(b));
+        b.makeMove(reply);
+        ai.cancel();
+        assertNull("cancelled!", ai.stopPondering(b));
+        b.undo();
+        ai.startPondering(b);
+        Iterator<Move> moves = b.legalMoves();
+        Move other = moves.next();
+        if (other.equals(reply)) {
+            other = moves.next();
+        }
+        b.makeMove(other);
+        assertNull("miss!", ai.stopPondering(b));
+
+        Controller controller =
+            new Controller(new NullView(), null, Tournament.QUIET,
+                           new TextPlayer(), new AI());
+        controller.setTimeLimits(300, 60000);
+        for (String m : new String[] {
+                "d1-d9(g9)", "g10-b5(b4)", "d9-b7(d9)", "a7-a5(c7)",
+                "b7-a8(a6)", "d10-b8(b9)", "g1-b6(b7)", "j7-e2(e10)",
+                "j4-e4(e9)", "b8-a9(b8)", "e4-h4(e4)", "b5-c6(c5)" }) {
+            controller.executeCommand(m);
+        }
+        AI player = (AI) new AI().create(Piece.WHITE, controller);
+        controller.executeCommand(player.myMove());
+        b = controller.board();
+        reply = player.startPondering(b);
+        assertTrue("predicted again!", reply != null);
+        moves = b.legalMoves();
+        other = moves.next();
+        if (other.equals(reply)) {
+            other = moves.next();
+        }
+        controller.executeCommand(other.toString());
+        player.myMove();
+        assertTrue("searched after pondering!",
+                   player.searchStats().depth() >= 1);
+    }
+
+    /** Test building a tablebase in two parts, and that endgames solved
+     *  with it come out as they do without it. */
+    @Test
+    public void tablebaseTest() throws IOException {
+        File file = File.createTempFile("amazons", ".tb");
+        file.deleteOnExit();
+        assertTrue("fresh file!", file.delete());
+        new TablebaseBuilder(2).build(file.getPath(), 8);
+        assertEquals("first part!", 8,
+                     Tablebase.open(file.getPath()).tiers());
+        new TablebaseBuilder(3).build(file.getPath(), 12);
+        Tablebase table = Tablebase.open(file.getPath());
+        assertEquals("resumed!", 12, table.tiers());
+        File other = File.createTempFile("amazons", ".txt");
+        other.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(other)) {
+            out.write(new byte[100]);
+        }
+        try {
+            new TablebaseBuilder(1).build(other.getPath(), 1);
+            fail("not a tablebase!");
+        } catch (IllegalArgumentException excp) {
+            assertEquals("other file untouched!", 100, other.length());
+        }
+        Random random = new Random(18);
+        long plainNodes = 0, tabledNodes = 0;
+        for (int trial = 0; trial < 20; trial += 1) {
+            Board b = new Board();
+            for (int i = 0; i < Board.SIZE * Board.SIZE; i += 1) {
+                b.put(Piece.SPEAR, Square.sq(i));
+            }
+            String[] parked = { "j1", "j3", "h1", "a10", "c10", "a8" };
+            for (int side = 0; side < 2; side += 1) {
+                Piece queen = side == 0 ? Piece.WHITE : Piece.BLACK;
+                int inBox = 1 + random.nextInt(2);
+                for (int k = 0; k < inBox; k += 1) {
+                    Square s;
+                    do {
+                        s = Square.sq(random.nextInt(4) + 6 * side,
+                                      random.nextInt(4) + 6 * side);
+                    } while (b.get(s) != Piece.SPEAR);
+                    b.put(queen, s);
+                }
+                for (int k = inBox; k < 4; k += 1) {
+                    b.put(queen, Square.sq(parked[3 * side + k - 1]));
+                }
+            }
+            for (int i = 0; i < 16; i += 1) {
+                for (int side = 0; side < 2; side += 1) {
+                    Square s = Square.sq(i % 4 + 6 * side,
+                                         i / 4 + 6 * side);
+                    if (b.get(s) == Piece.SPEAR && random.nextInt(5) < 3) {
+                        b.put(Piece.EMPTY, s);
+                    }
+                }
+            }
+            Endgame plain = new Endgame(), tabled = new Endgame();
+            tabled.setTablebase(table);
+            assertTrue("solved!", plain.solve(b));
+            assertTrue("solved with table!", tabled.solve(b));
+            assertEquals("white moves!", plain.moves(Piece.WHITE),
+                         tabled.moves(Piece.WHITE));
+            assertEquals("black moves!", plain.moves(Piece.BLACK),
+                         tabled.moves(Piece.BLACK));
+            plainNodes += plain.nodes();
+            tabledNodes += tabled.nodes();
+        }
+        assertTrue("table used!", tabledNodes < plainNodes);
+
+        Board b = new Board();
+        for (int i = 0; i < Board.SIZE * Board.SIZE; i += 1) {
+            b.put(Piece.SPEAR, Square.sq(i));
+        }
+        for (String s : new String[] { "a1", "a2", "c1", "d1", "d2", "a4",
+                                       "b4" }) {
+            b.put(Piece.EMPTY, Square.sq(s));
+        }
+        b.put(Piece.WHITE, Square.sq("b2"));
+        b.put(Piece.BLACK, Square.sq("c3"));
+        Endgame tabled = new Endgame();
+        tabled.setTablebase(table);
+        assertFalse("adjacent queens!", tabled.solve(b));
+        assertFalse("adjacent queens!", new Endgame().solve(b));
+    }
+
+    /** Test building, writing, and looking up an opening book. */
+    @Test
+    public void openingBookTest() throws IOException {
+        OpeningBook.Builder builder = new OpeningBook.Builder();
+        Board b = new Board();
+        new BookBuilder(builder, 2, 2, 1000000).build(b);
+        assertEquals("board untouched!", 0, b.numMoves());
+        assertEquals("positions!", 3, builder.size());
+        assertTrue("visit!", builder.visit(b.key()));
+        File file = File.createTempFile("amazons", ".book");
+        file.deleteOnExit();
+        builder.write(file.getPath());
+        assertEquals("file size!", OpeningBook.HEADER_BYTES
+                     + 3 * OpeningBook.RECORD_BYTES, file.length());
+        OpeningBook book = OpeningBook.open(file.getPath());
+        assertEquals("size!", 3, book.size());
+        for (int k = 1; k < book.size(); k += 1) {
+            assertTrue("sorted!", book.key(k - 1) < book.key(k));
+        }
+        Move first = book.lookup(b);
+        assertTrue("book move!", first != null && b.isLegal(first));
+        assertEquals("count!", 2, book.count(book.find(b.key())));
+        b.makeMove(first);
+        assertTrue("reply!", b.isLegal(book.lookup(b)));
+        b.makeMove(book.lookup(b));
+        assertNull("out of book!", book.lookup(b));
+        assertEquals("missing!", OpeningBook.MISSING, book.find(b.key()));
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(0);
+        }
+        try {
+            OpeningBook.open(file.getPath());
+            fail("damaged book accepted!");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    /** Return the value to WHITE of B searched to DEPTH (as for
+     *  AI.searchToDepth) by plain minimax, judging positions with
+     *  EVAL. */
+    private static int minimax(Board b, int depth, Evaluator eval) {
+        if (b.winner() != null) {
+            return b.winner() == Piece.WHITE ? Searcher.INFTY
+                : -Searcher.INFTY;
+        }
+        boolean white = b.turn() == Piece.WHITE;
+        int best = white ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        int[] moves = new int[Board.MAX_MOVES];
+        int n = b.legalMoves(b.turn(), moves);
+        for (int i = 0; i < n; i += 1) {
+            b.makeMove(moves[i]);
+            int value = depth == 0 ? eval.score(b)
+                : minimax(b, depth - 1, eval);
+            b.undo();
+            best = white ? Math.max(best, value) : Math.min(best, value);
+        }
+        return best;
+    }
+
+    /** Test copying into a board that already has a history, longer or
+     *  shorter. */
+    @Test
+    public void copyIntoTest() {
+        Board game = new Board(), mine = new Board();
+        String[] moves = { "d1-d7(g7)", "g10-g8(f8)", "a4-a5(b5)",
+                           "a7-b7(c7)" };
+        for (String m : moves) {
+            game.makeMove(Move.mv(m));
+            mine.copy(game);
+            assertEquals("copied!", game.toString(), mine.toString());
+            assertEquals("same key!", game.key(), mine.key());
+        }
+        game.undo();
+        game.undo();
+        game.makeMove(Move.mv("a4-a6(a4)"));
+        mine.copy(game);
+        assertEquals("shorter!", 3, mine.numMoves());
+        mine.undo();
+        game.undo();
+        assertEquals("undone!", game.toString(), mine.toString());
+        assertEquals("undone key!", game.key(), mine.key());
+        assertEquals("count!", 90, mine.count(Piece.EMPTY));
+        assertEquals("spears!", 2, mine.count(Piece.SPEAR));
+    }
+
+    @Test
+    public void perftTest() {
+        Board b = new Board();
+        Perft perft = new Perft(b);
+        assertEquals("depth 0!", 1, perft.count(0));
+        assertEquals("depth 1!", 2176, perft.count(1));
+        assertEquals("depth 2!", 4307152, perft.count(2));
+        int[] moves = new int[Board.MAX_MOVES],
+            replies = new int[Board.MAX_MOVES];
+        long[] counts = new long[Board.MAX_MOVES];
+        int n = perft.divide(2, moves, counts);
+        assertEquals("divided!", 2176, n);
+        long total = 0;
+        for (int i = 0; i < n; i += 1) {
+            b.makeMove(moves[i]);
+            assertEquals("divided!", b.legalMoves(Piece.BLACK, replies),
+                         counts[i]);
+            b.undo();
+            total += counts[i];
+        }
+        assertEquals("divided total!", 4307152, total);
+
+        b.makeMove(Move.mv("d1-d7(g7)"));
+        b.makeMove(Move.mv("g10-g8(f8)"));
+        b.makeMove(Move.mv("a4-a5(b5)"));
+        long key = b.key();
+        long expected = 0;
+        Iterator<Move> iter = b.legalMoves(Piece.BLACK);
+        while (iter.hasNext()) {
+            b.makeMove(iter.next());
+            Iterator<Move> iter2 = b.legalMoves(Piece.WHITE);
+            while (iter2.hasNext()) {
+                iter2.next();
+                expected += 1;
+            }
+            b.undo();
+        }
+        assertEquals("iterators agree!", expected, new Perft(b).count(2));
+        assertEquals("unchanged!", key, b.key());
+    }
+
+    @Test
+    public void tournamentTest() {
+        Tournament tournament =
+            new Tournament("engine mcts; playouts 40", "engine mcts;"
+                           + " playouts 20; eval mobility", 2, 5);
+        List<Tournament.Game> games = tournament.run(4, 2);
+        assertEquals("all played!", 4, games.size());
+        for (int k = 0; k < 4; k += 1) {
+            Tournament.Game game = games.get(k);
+            assertEquals("in order!", k, game.number);
+            assertEquals("colors swap!", k % 2 == 0, game.firstWhite);
+            assertEquals("moves add up!", game.plies,
+                         2 + game.moves[0] + game.moves[1]);
+            assertTrue("nodes counted!", game.nodes[0] > 0);
+        }
+        Tournament.Game again = tournament.play(3);
+        assertEquals("repeatable!", games.get(3).plies, again.plies);
+        assertEquals("repeatable!", games.get(3).firstWon, again.firstWon);
+        assertEquals("repeatable!", games.get(3).nodes[1], again.nodes[1]);
+        try {
+            new Tournament("engine ab", "bogus", 0, 0);
+            fail("bad configuration!");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void sprtTest() {
+        assertEquals("even!", 0.5, Sprt.score(0), 1e-12);
+        assertEquals("symmetric!", 1.0, Sprt.score(50) + Sprt.score(-50),
+                     1e-12);
+        Sprt sprt = new Sprt(0, 10, 0.05, 0.05);
+        assertEquals("bounds!", Math.log(0.05 / 0.95), sprt.lower(), 1e-12);
+        assertEquals("bounds!", Math.log(0.95 / 0.05), sprt.upper(), 1e-12);
+        for (int k = 0; k < 10; k += 1) {
+            sprt.addPair(1);
+        }
+        assertFalse("undecided!", sprt.done());
+        sprt.addPair(2);
+        sprt.addPair(0);
+        double mean = 0.5, variance = 4.5 / 14 - 0.25, s1 = Sprt.score(10);
+        assertEquals("llr!", 14 * (0 - (mean - s1) * (mean - s1))
+                     / (2 * variance), sprt.llr(), 1e-9);
+        for (int k = 0; k < 200 && !sprt.done(); k += 1) {
+            sprt.addPair(k % 3 == 0 ? 1 : 2);
+        }
+        assertTrue("decided!", sprt.done());
+        assertTrue("stronger!", sprt.acceptedH1());
+        sprt = new Sprt(0, 10, 0.05, 0.05);
+        for (int k = 0; k < 100 && !sprt.done(); k += 1) {
+            sprt.addPair(2);
+        }
+        assertTrue("sweep decided!", sprt.done());
+        assertTrue("sweep stronger!", sprt.acceptedH1());
+        try {
+            new Sprt(5, 0, 0.05, 0.05);
+            fail("bad bounds!");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+
+        Tournament tournament =
+            new Tournament("engine mcts; playouts 20",
+                           "engine mcts; playouts 20", 2, 7);
+        Sprt quick = new Sprt(-400, 400, 0.2, 0.2);
+        List<Tournament.Game> games = tournament.run(40, 2, quick, null);
+        assertTrue("stopped early!", quick.done() || games.size() == 40);
+        assertTrue("pairs counted!",
+                   quick.pairs() >= 1 && 2 * quick.pairs() <= games.size());
+    }
+
     @Test
     public void boardLegalMoveTest() {
         Board b = new Board();
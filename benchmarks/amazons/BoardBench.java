@@ -0,0 +1,87 @@
+package amazons;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks of the Board operations that the searches use at every
+ *  node: generating moves, making and undoing them, copying, and
+ *  checking for the end of the game.
+ *  @author Zhenkai Han
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BoardBench {
+
+    /** The name of the position benchmarked (see Corpus). */
+    @Param({ Corpus.OPENING, Corpus.MIDGAME, Corpus.ENDGAME })
+    public String phase;
+
+    /** Set up the position and its legal moves. */
+    @Setup
+    public void setUp() {
+        _board = Corpus.position(phase);
+        _copy = new Board();
+        _n = _board.legalMoves(_board.turn(), _moves);
+    }
+
+    /** Generate all legal moves. */
+    @Benchmark
+    public int legalMoves() {
+        return _board.legalMoves(_board.turn(), _moves);
+    }
+
+    /** Make each legal move and undo it: the cost per move is this
+     *  time divided by the number of legal moves. */
+    @Benchmark
+    public long makeMoveUndo() {
+        long keys = 0;
+        for (int i = 0; i < _n; i += 1) {
+            _board.makeMove(_moves[i]);
+            keys ^= _board.key();
+            _board.undo();
+        }
+        return keys;
+    }
+
+    /** Copy the board into a new Board. */
+    @Benchmark
+    public Board copyConstructor() {
+        return new Board(_board);
+    }
+
+    /** Copy the board into one kept for the purpose. */
+    @Benchmark
+    public Board copyInto() {
+        _copy.copy(_board);
+        return _copy;
+    }
+
+    /** Check whether the game is over. */
+    @Benchmark
+    public void winner(Blackhole hole) {
+        hole.consume(_board.winner());
+    }
+
+    /** The position benchmarked. */
+    private Board _board;
+
+    /** A board to copy into. */
+    private Board _copy;
+
+    /** The legal moves in _board. */
+    private final int[] _moves = new int[Board.MAX_MOVES];
+
+    /** The number of legal moves in _board. */
+    private int _n;
+
+}
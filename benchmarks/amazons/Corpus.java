@@ -0,0 +1,48 @@
+package amazons;
+
+import java.util.Random;
+
+/** The positions the benchmarks are run on.  Each is reached from the
+ *  initial position by a fixed number of random legal moves, chosen
+ *  with a fixed seed, so that every build benchmarks the same
+ *  positions.
+ *  @author Zhenkai Han
+ */
+final class Corpus {
+
+    /** Names of the positions, as used in @Param annotations. */
+    static final String OPENING = "opening", MIDGAME = "midgame",
+        ENDGAME = "endgame";
+
+    /** Seed for the random moves. */
+    private static final long SEED = 61;
+
+    /** Return a new Board holding the position named PHASE. */
+    static Board position(String phase) {
+        switch (phase) {
+        case OPENING:
+            return play(4);
+        case MIDGAME:
+            return play(24);
+        case ENDGAME:
+            return play(56);
+        default:
+            throw Utils.error("unknown position: %s", phase);
+        }
+    }
+
+    /** Return a Board on which PLIES random legal moves have been made
+     *  from the initial position, or as many as could be before the
+     *  game ended. */
+    private static Board play(int plies) {
+        Board board = new Board();
+        Random random = new Random(SEED);
+        int[] moves = new int[Board.MAX_MOVES];
+        for (int k = 0; k < plies && board.winner() == null; k += 1) {
+            int n = board.legalMoves(board.turn(), moves);
+            board.makeMove(moves[random.nextInt(n)]);
+        }
+        return board;
+    }
+
+}
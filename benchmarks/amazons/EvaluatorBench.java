@@ -0,0 +1,53 @@
+package amazons;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of the static evaluators that judge the leaves of a
+ *  search.
+ *  @author Zhenkai Han
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EvaluatorBench {
+
+    /** The name of the position benchmarked (see Corpus). */
+    @Param({ Corpus.OPENING, Corpus.MIDGAME, Corpus.ENDGAME })
+    public String phase;
+
+    /** Set up the position and evaluators. */
+    @Setup
+    public void setUp() {
+        _board = Corpus.position(phase);
+        _territory = new TerritoryEvaluator().create(_board.turn());
+        _mobility = new MobilityEvaluator().create(_board.turn());
+    }
+
+    /** Judge the position by territory. */
+    @Benchmark
+    public int territory() {
+        return _territory.score(_board);
+    }
+
+    /** Judge the position by mobility. */
+    @Benchmark
+    public int mobility() {
+        return _mobility.score(_board);
+    }
+
+    /** The position benchmarked. */
+    private Board _board;
+
+    /** Evaluators for the side to move. */
+    private Evaluator _territory, _mobility;
+
+}
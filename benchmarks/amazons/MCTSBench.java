@@ -0,0 +1,69 @@
+package amazons;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of Monte-Carlo tree search with varying numbers of
+ *  threads.  Each operation is one playout, so the scores are playouts
+ *  per second, and comparing them across thread counts shows how well
+ *  the parallel search scales.  Each search starts from an empty tree,
+ *  so that it does the same work every time.  More threads than the
+ *  defaults may be given with JMH's -p threads=1,2,4,8,16.
+ *  @author Zhenkai Han
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MCTSBench {
+
+    /** Playouts in each search. */
+    static final int PLAYOUTS = 20000;
+
+    /** The name of the position benchmarked (see Corpus). */
+    @Param({ Corpus.OPENING, Corpus.MIDGAME })
+    public String phase;
+
+    /** The number of threads searching. */
+    @Param({ "1", "2", "4" })
+    public int threads;
+
+    /** Set up the position. */
+    @Setup(Level.Trial)
+    public void setUp() {
+        _board = Corpus.position(phase);
+    }
+
+    /** Start a player with an empty tree, so that no search reuses the
+     *  tree of the last. */
+    @Setup(Level.Invocation)
+    public void newPlayer() {
+        _player = new MCTSPlayer(_board.turn(), null);
+        _player.setThreads(threads);
+        _player.setSeed(0);
+    }
+
+    /** Search the position for a fixed number of playouts, as
+     *  MCTSPlayer.findMove would with a limit on playouts. */
+    @Benchmark
+    @OperationsPerInvocation(PLAYOUTS)
+    public Move search() {
+        return _player.search(_board, PLAYOUTS, Long.MAX_VALUE);
+    }
+
+    /** The position benchmarked. */
+    private Board _board;
+
+    /** The player searching _board. */
+    private MCTSPlayer _player;
+
+}
@@ -0,0 +1,64 @@
+package amazons;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of the AI's search to a fixed depth.  Each search starts
+ *  from an empty transposition table, so that it does the same work
+ *  every time.
+ *  @author Zhenkai Han
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SearchBench {
+
+    /** The name of the position benchmarked (see Corpus). */
+    @Param({ Corpus.OPENING, Corpus.MIDGAME, Corpus.ENDGAME })
+    public String phase;
+
+    /** The depth searched to.  Deeper searches of the opening take
+     *  seconds each; ask for them with JMH's -p depth=2. */
+    @Param({ "1" })
+    public int depth;
+
+    /** Set up the position and AI. */
+    @Setup(Level.Trial)
+    public void setUp() {
+        _board = Corpus.position(phase);
+        _ai = new AI(_board.turn(), null);
+        _ai.setThreads(1);
+    }
+
+    /** Empty the AI's transposition table. */
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        if (_ai.transpositionTable() != null) {
+            _ai.transpositionTable().clear();
+        }
+    }
+
+    /** Search the position to a fixed depth, as AI.findMove would
+     *  without a time limit. */
+    @Benchmark
+    public Move searchToDepth() {
+        _ai.searchToDepth(_board, depth);
+        return _ai.bestMove();
+    }
+
+    /** The position benchmarked. */
+    private Board _board;
+
+    /** The AI searching _board. */
+    private AI _ai;
+
+}
@@ -0,0 +1,65 @@
+package amazons;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of converting Squares and Moves to and from their
+ *  textual and packed forms, as done for every move a player enters
+ *  and every move taken from a transposition table.
+ *  @author Zhenkai Han
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SquareMoveBench {
+
+    /** Parse a square. */
+    @Benchmark
+    public Square parseSquare() {
+        return Square.sq(_square);
+    }
+
+    /** Parse a move. */
+    @Benchmark
+    public Move parseMove() {
+        return Move.mv(_move);
+    }
+
+    /** Look up a move from its packed form. */
+    @Benchmark
+    public Move unpackMove() {
+        return Move.mv(_packed);
+    }
+
+    /** Pack a move. */
+    @Benchmark
+    public int packMove() {
+        return _unpacked.packed();
+    }
+
+    /** Print a move. */
+    @Benchmark
+    public String printMove() {
+        return _unpacked.toString();
+    }
+
+    /** A square, as text.  Not final, so that it is not constant
+     *  folded. */
+    private String _square = "g10";
+
+    /** A move, as text. */
+    private String _move = "d1-d7(g4)";
+
+    /** The same move, packed. */
+    private int _packed = Move.mv("d1-d7(g4)").packed();
+
+    /** The same move. */
+    private Move _unpacked = Move.mv("d1-d7(g4)");
+
+}